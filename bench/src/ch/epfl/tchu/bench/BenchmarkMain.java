@@ -0,0 +1,30 @@
+package ch.epfl.tchu.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the module with the gc profiler, so that the allocation rate of each benchmark is reported
+ * next to its time. The arguments are those of the JMH command line (e.g. a regular expression selecting the
+ * benchmarks, or -p phase=END_GAME).
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,74 @@
+package ch.epfl.tchu.bench;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The game states on which the benchmarks run, obtained by playing a game on the ChMap with a fixed seed
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class BenchmarkStates {
+
+    /**
+     * The moment of the game at which the state is taken
+     */
+    public enum Phase {
+        MID_GAME, END_GAME
+    }
+
+    private static final int MID_GAME_ROUTES_PER_PLAYER = 8;
+
+    private BenchmarkStates() {
+    }
+
+    /**
+     * Plays a game until the given phase : each player keeps all its tickets and, at each turn, claims a random route
+     * it can claim, or draws two cards from the deck if there isn't any
+     *
+     * @param phase the phase of the game to reach
+     * @param seed  the seed of the game
+     * @return the state of the game at the given phase
+     */
+    public static GameState of(Phase phase, long seed) {
+        Random rng = new Random(seed);
+        GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), rng);
+        for (PlayerId playerId : PlayerId.ALL) {
+            SortedBag<Ticket> tickets = state.topTickets(Constants.INITIAL_TICKETS_COUNT);
+            state = state.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT).withInitiallyChosenTickets(playerId, tickets);
+        }
+
+        while (!reached(state, phase)) {
+            List<Route> claimable = claimableRoutes(state);
+            if (claimable.isEmpty()) {
+                for (int i = 0; i < 2; i++) state = state.withCardsDeckRecreatedIfNeeded(rng).withBlindlyDrawnCard();
+            } else {
+                Route route = claimable.get(rng.nextInt(claimable.size()));
+                state = state.withClaimedRoute(route, state.currentPlayerState().possibleClaimCards(route).get(0));
+            }
+            state = state.forNextTurn();
+        }
+        return state;
+    }
+
+    private static boolean reached(GameState state, Phase phase) {
+        if (phase == Phase.END_GAME) return state.lastPlayer() != null;
+        for (PlayerId playerId : PlayerId.ALL)
+            if (state.playerState(playerId).routes().size() < MID_GAME_ROUTES_PER_PLAYER) return false;
+        return true;
+    }
+
+    private static List<Route> claimableRoutes(GameState state) {
+        List<Route> claimed = state.claimedRoutes();
+        List<Route> claimable = new ArrayList<>();
+        for (Route route : ChMap.routes()) {
+            if (!claimed.contains(route) && state.currentPlayerState().canClaimRoute(route)) claimable.add(route);
+        }
+        return claimable;
+    }
+}
@@ -0,0 +1,108 @@
+package ch.epfl.tchu.bench;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+import ch.epfl.tchu.net.Serdes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of ch.epfl.tchu.game (and of the serialization of the states), on mid-game and end-game
+ * states of the ChMap
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmarks {
+
+    //far more hands than SortedBag keeps the subsets of, so that subsetsOfSize computes them almost every time
+    private static final int HAND_COUNT = 1 << 14;
+    private static final int HAND_SIZE = 10;
+
+    @Param({"MID_GAME", "END_GAME"})
+    public BenchmarkStates.Phase phase;
+
+    @Param({"2021"})
+    public long seed;
+
+    private GameState state;
+    private PlayerState playerState;
+    private List<Route> routes;
+    private SortedBag<Card> hand;
+    private SortedBag<Card>[] hands;
+    private int nextHand;
+    private String serializedState;
+
+    @Setup
+    public void setUp() {
+        state = BenchmarkStates.of(phase, seed);
+        playerState = state.currentPlayerState();
+        routes = playerState.routes();
+        hand = playerState.cards().union(Constants.ALL_CARDS.difference(playerState.cards()).subsetsOfSize(4).iterator().next());
+        serializedState = Serdes.serPublicGameState.serialize(state);
+        hands = randomHands(new Random(seed));
+    }
+
+    //distinct hands of HAND_SIZE cards
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static SortedBag<Card>[] randomHands(Random rng) {
+        Set<SortedBag<Card>> hands = new LinkedHashSet<>();
+        while (hands.size() < HAND_COUNT) {
+            SortedBag.Builder<Card> hand = new SortedBag.Builder<>();
+            for (int i = 0; i < HAND_SIZE; i++) hand.add(Card.ALL.get(rng.nextInt(Card.COUNT)));
+            hands.add(hand.build());
+        }
+        return hands.toArray(new SortedBag[0]);
+    }
+
+    @Benchmark
+    public Trail longestTrail() {
+        return Trail.longest(routes);
+    }
+
+    @Benchmark
+    public int subsetsOfSize() {
+        SortedBag<Card> nextHand = hands[this.nextHand];
+        this.nextHand = (this.nextHand + 1) % HAND_COUNT;
+        return nextHand.subsetsOfSize(3).size();
+    }
+
+    @Benchmark
+    public int cachedSubsetsOfSize() {
+        return hand.subsetsOfSize(Math.min(3, hand.size())).size();
+    }
+
+    @Benchmark
+    public int ticketPoints() {
+        return playerState.ticketPoints();
+    }
+
+    @Benchmark
+    public void possibleClaimCards(Blackhole blackhole) {
+        for (Route route : ChMap.routes()) blackhole.consume(route.possibleClaimCards());
+    }
+
+    @Benchmark
+    public void canClaimRoute(Blackhole blackhole) {
+        for (Route route : ChMap.routes()) blackhole.consume(playerState.canClaimRoute(route));
+    }
+
+    @Benchmark
+    public String serializePublicGameState() {
+        return Serdes.serPublicGameState.serialize(state);
+    }
+
+    @Benchmark
+    public PublicGameState deserializePublicGameState() {
+        return Serdes.serPublicGameState.deserialize(serializedState);
+    }
+}
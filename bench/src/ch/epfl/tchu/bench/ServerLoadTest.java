@@ -0,0 +1,97 @@
+package ch.epfl.tchu.bench;
+
+import ch.epfl.tchu.game.PlayerId;
+import ch.epfl.tchu.net.GameExecutors;
+import ch.epfl.tchu.net.MatchServer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures what idle games cost to a MatchServer: it connects pairs of clients which never answer, so that each
+ * game waits forever for the first answer of its first player, then reports the threads and the memory used.
+ * Run it once with platform threads and once with virtual threads (Java 21 and later) to compare them.
+ * The arguments are the numbers of games, e.g. 100 1000 5000, optionally followed by platform or virtual.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class ServerLoadTest {
+
+    private static final Map<PlayerId, String> PLAYER_NAMES = Map.of(PlayerId.PLAYER_1, "Ada", PlayerId.PLAYER_2, "Charles");
+
+    private ServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean virtual = GameExecutors.hasVirtualThreads();
+        List<Integer> gameCounts = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("platform") || arg.equals("virtual")) virtual = arg.equals("virtual");
+            else gameCounts.add(Integer.parseInt(arg));
+        }
+        if (gameCounts.isEmpty()) gameCounts = List.of(100, 1000, 5000);
+        if (virtual && !GameExecutors.hasVirtualThreads())
+            throw new IllegalStateException("virtual threads need Java 21 or later");
+
+        for (int gameCount : gameCounts) {
+            ExecutorService executor = virtual ? GameExecutors.newThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+            System.out.println(run(gameCount, executor, virtual ? "virtual" : "platform"));
+        }
+    }
+
+    private static String run(int gameCount, ExecutorService executor, String kind) throws IOException, InterruptedException {
+        long threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long residentBefore = residentKilobytes();
+        long start = System.nanoTime();
+
+        MatchServer server = new MatchServer(0, gameCount, PLAYER_NAMES, executor);
+        Thread serverThread = new Thread(server::run);
+        serverThread.start();
+
+        List<SocketChannel> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < gameCount * PlayerId.COUNT; i++) {
+                clients.add(SocketChannel.open(new InetSocketAddress("localhost", server.port())));
+            }
+            //a game is waiting once its first player has received INIT_PLAYERS
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            for (int i = 0; i < clients.size(); i += PlayerId.COUNT) {
+                buffer.clear();
+                clients.get(i).read(buffer);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            long threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+            long resident = residentKilobytes() - residentBefore;
+            return String.format("%d idle games on %s threads, started in %.2f s: %d more threads, %s",
+                    gameCount, kind, elapsedNanos / 1e9, threads,
+                    residentBefore < 0 ? "resident memory unknown" : String.format("%.1f MB more resident memory (%.1f kB per game)",
+                            resident / 1024.0, (double) resident / gameCount));
+        } finally {
+            server.close();
+            serverThread.join();
+            for (SocketChannel client : clients) client.close();
+        }
+    }
+
+    //the resident memory of the process on Linux, -1 elsewhere
+    private static long residentKilobytes() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) return -1;
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("[^0-9]", ""));
+        }
+        return -1;
+    }
+}
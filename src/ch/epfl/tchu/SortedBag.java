@@ -1,6 +1,8 @@
 package ch.epfl.tchu;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Stream;
 
 /**
@@ -9,10 +11,37 @@ import java.util.stream.Stream;
  * @param <E> le type des éléments du multiensemble.
  */
 public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
-    // Table associant sa multiplicité à chaque élément de l'ensemble.
+    // Constantes des types énumérés, pour éviter la copie faite par getEnumConstants.
+    private static final ClassValue<Object[]> ENUM_CONSTANTS = new ClassValue<>() {
+        @Override
+        protected Object[] computeValue(Class<?> type) {
+            return type.getEnumConstants();
+        }
+    };
+
+    // Table associant sa multiplicité à chaque élément de l'ensemble, null si les
+    // éléments sont des valeurs d'un type énuméré (voir universe).
     // Invariant : toutes les multiplicités sont strictement positives (> 0).
     private final SortedMap<E, Integer> elements;
 
+    // Si les éléments sont des valeurs d'un type énuméré : toutes les valeurs de ce type,
+    // et la multiplicité de chacune, à l'index donné par son ordinal. Sinon null.
+    // L'ordre des ordinaux est l'ordre naturel des valeurs d'un type énuméré.
+    private final E[] universe;
+    private final int[] counts;
+
+    private final int size;
+
+    // Table retournée par toMap, calculée au besoin pour les multiensembles d'énumérations.
+    private Map<E, Integer> map;
+
+    // Sous-ensembles déjà calculés par subsetsOfSize, indexés par la liste (multiensemble, taille).
+    // La table est partagée sans verrou par tous les fils d'exécution ; au-delà de SUBSETS_CACHE_SIZE
+    // entrées, des entrées quelconques sont oubliées jusqu'à ce qu'il n'en reste que SUBSETS_CACHE_KEPT.
+    private static final int SUBSETS_CACHE_SIZE = 1024;
+    private static final int SUBSETS_CACHE_KEPT = SUBSETS_CACHE_SIZE * 3 / 4;
+    private static final Map<List<Object>, Set<?>> SUBSETS_CACHE = new ConcurrentHashMap<>();
+
     /**
      * Crée un multiensemble vide.
      * @param <E> le type des éléments du multiensemble.
@@ -42,7 +71,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public static <E extends Comparable<E>> SortedBag<E> of(int n, E e) {
         Preconditions.checkArgument(0 <= n);
-        return n == 0 ? of() : new SortedBag<>(new TreeMap<>(Map.of(e, n)));
+        return n == 0 ? of() : new Builder<E>().add(n, e).build();
     }
 
     /**
@@ -58,10 +87,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public static <E extends Comparable<E>> SortedBag<E> of(int n1, E e1, int n2, E e2) {
         Preconditions.checkArgument(0 <= n1 && 0 <= n2);
-        var elements = new TreeMap<E, Integer>();
-        if (n1 > 0) elements.put(e1, n1);
-        if (n2 > 0) elements.put(e2, n2);
-        return new SortedBag<>(elements);
+        return new Builder<E>().add(n1, e1).add(n2, e2).build();
     }
 
     /**
@@ -71,6 +97,8 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return un multiensemble contenant exactement les mêmes éléments que <code>iterable</code>
      */
     public static <E extends Comparable<E>> SortedBag<E> of(Iterable<E> iterable) {
+        // Un multiensemble étant immuable, il peut être partagé plutôt que copié.
+        if (iterable instanceof SortedBag) return (SortedBag<E>) iterable;
         var builder = new Builder<E>();
         iterable.forEach(builder::add);
         return builder.build();
@@ -82,6 +110,45 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
     private SortedBag(SortedMap<E, Integer> elements) {
         assert elements.values().stream().allMatch(n -> n > 0);
         this.elements = Collections.unmodifiableSortedMap(elements);
+        this.universe = null;
+        this.counts = null;
+        this.size = elements.values().stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        this.map = this.elements;
+    }
+
+    // Construit un multiensemble de valeurs d'un type énuméré avec les multiplicités données.
+    // Attention: le tableau n'est pas copié et ne doit donc jamais être modifié !
+    private SortedBag(E[] universe, int[] counts, int size) {
+        assert universe.length == counts.length && Arrays.stream(counts).sum() == size;
+        this.elements = null;
+        this.universe = universe;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    // Retourne toutes les valeurs du type énuméré de l'élément donné, ou null s'il n'est pas une énumération.
+    @SuppressWarnings("unchecked")
+    private static <E> E[] universeOf(E element) {
+        return element instanceof Enum<?>
+                ? (E[]) ENUM_CONSTANTS.get(((Enum<?>) element).getDeclaringClass())
+                : null;
+    }
+
+    // Vrai ssi ce multiensemble et celui donné sont tous deux des multiensembles du même type énuméré.
+    private boolean sameUniverse(SortedBag<E> that) {
+        return universe != null && universe == that.universe;
+    }
+
+    // Appelle l'action donnée pour chaque élément distinct et sa multiplicité, dans l'ordre.
+    private void forEachEntry(ObjIntConsumer<E> action) {
+        if (universe != null) {
+            for (int i = 0; i < counts.length; i++)
+                if (counts[i] > 0) action.accept(universe[i], counts[i]);
+        } else {
+            elements.forEach(action::accept);
+        }
     }
 
     /**
@@ -89,7 +156,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return vrai ssi le multiensemble est vide.
      */
     public boolean isEmpty() {
-        return elements.isEmpty();
+        return size == 0;
     }
 
     /**
@@ -97,9 +164,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return le nombre d'éléments dans le multiensemble.
      */
     public int size() {
-        return elements.values().stream()
-                .mapToInt(Integer::intValue)
-                .sum();
+        return size;
     }
 
     /**
@@ -108,6 +173,8 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return la multiplicité de <code>element</code>, 0 s'il n'appartient pas au multiensemble
      */
     public int countOf(E element) {
+        if (universe != null)
+            return counts[((Enum<?>) element).ordinal()];
         return elements.getOrDefault(element, 0);
     }
 
@@ -117,7 +184,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return vrai ssi <code>element</code> appartient au multiensemble
      */
     public boolean contains(E element) {
-        return elements.containsKey(element);
+        return countOf(element) > 0;
     }
 
     /**
@@ -126,6 +193,17 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return vrai ssi <code>that</code> est un sous-ensemble de <code>this</code>
      */
     public boolean contains(SortedBag<E> that) {
+        if (that.size > size) return false;
+        if (sameUniverse(that)) {
+            for (int i = 0; i < counts.length; i++)
+                if (that.counts[i] > counts[i]) return false;
+            return true;
+        }
+        if (that.universe != null) {
+            for (int i = 0; i < that.counts.length; i++)
+                if (that.counts[i] > countOf(that.universe[i])) return false;
+            return true;
+        }
         return that.elements.entrySet().stream()
                 .allMatch(e -> e.getValue() <= countOf(e.getKey()));
     }
@@ -138,11 +216,19 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public E get(int index) {
         Objects.checkIndex(index, size());
-        for (var elementsAndCount : elements.entrySet()) {
-            var count = elementsAndCount.getValue();
-            if (index < count)
-                return elementsAndCount.getKey();
-            index -= count;
+        if (universe != null) {
+            for (int i = 0; i < counts.length; i++) {
+                if (index < counts[i])
+                    return universe[i];
+                index -= counts[i];
+            }
+        } else {
+            for (var elementsAndCount : elements.entrySet()) {
+                var count = elementsAndCount.getValue();
+                if (index < count)
+                    return elementsAndCount.getKey();
+                index -= count;
+            }
         }
         throw new Error(); // ne devrait jamais se produire
     }
@@ -153,9 +239,14 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return l'union de <code>this</code> et de <code>that</code>
      */
     public SortedBag<E> union(SortedBag<E> that) {
-        var newElements = new TreeMap<>(elements);
-        that.elements.forEach((e, n) -> newElements.merge(e, n, Integer::sum));
-        return new SortedBag<>(newElements);
+        if (that.isEmpty()) return this;
+        if (isEmpty()) return that;
+        if (sameUniverse(that)) {
+            var newCounts = counts.clone();
+            for (int i = 0; i < newCounts.length; i++) newCounts[i] += that.counts[i];
+            return new SortedBag<>(universe, newCounts, size + that.size);
+        }
+        return new Builder<E>().add(this).add(that).build();
     }
 
     /**
@@ -164,32 +255,107 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return la différence entre <code>this</code> et <code>that</code>
      */
     public SortedBag<E> difference(SortedBag<E> that) {
-        var newElements = new TreeMap<>(elements);
-        that.elements.forEach((eR, nR) ->
+        if (isEmpty() || that.isEmpty()) return this;
+        if (sameUniverse(that)) {
+            var newCounts = new int[counts.length];
+            var newSize = 0;
+            for (int i = 0; i < newCounts.length; i++) {
+                newCounts[i] = Math.max(counts[i] - that.counts[i], 0);
+                newSize += newCounts[i];
+            }
+            return newSize == 0 ? of() : new SortedBag<>(universe, newCounts, newSize);
+        }
+        var newElements = new TreeMap<>(toMap());
+        that.forEachEntry((eR, nR) ->
                 newElements.compute(eR, (e, n) -> n != null && n > nR ? n - nR : null));
         return new SortedBag<>(newElements);
     }
 
     /**
      * Retourne tous les sous-ensembles du multiensemble ayant une taille donnée.
+     * Les sous-ensembles sont parcourus dans l'ordre (lexicographique) de leurs éléments,
+     * et l'ensemble retourné (immuable) est mémorisé pour les appels suivants.
      * @param size la taille des sous-ensembles à retourner
      * @return l'ensemble des sous-ensembles de <code>this</code> de taille <code>size</code>
      * @throws IllegalArgumentException si <code>size</code> n'est pas comprise entre 0 et
      * la taille du multiensemble
      */
+    @SuppressWarnings("unchecked")
     public Set<SortedBag<E>> subsetsOfSize(int size) {
         Preconditions.checkArgument(0 <= size && size <= size());
         if (size == 0)
             return Set.of(SortedBag.of());
 
-        var result = new HashSet<SortedBag<E>>();
-        for (var e1 : elements.keySet()) {
-            var s1 = SortedBag.of(e1);
-            this.difference(s1)
-                    .subsetsOfSize(size - 1)
-                    .forEach(e -> result.add(s1.union(e)));
+        var key = List.<Object>of(this, size);
+        var cached = SUBSETS_CACHE.get(key);
+        if (cached != null) return (Set<SortedBag<E>>) cached;
+
+        var subsets = computeSubsetsOfSize(size);
+        SUBSETS_CACHE.put(key, subsets);
+        if (SUBSETS_CACHE.size() > SUBSETS_CACHE_SIZE) evictSubsets();
+        return subsets;
+    }
+
+    // Oublie des entrées quelconques du cache ; plusieurs fils peuvent le faire en même temps.
+    private static void evictSubsets() {
+        var keys = SUBSETS_CACHE.keySet().iterator();
+        while (SUBSETS_CACHE.size() > SUBSETS_CACHE_KEPT && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    // Énumère les sous-ensembles de taille donnée directement à partir des multiplicités :
+    // pour chaque élément distinct, dans l'ordre, on en choisit d'abord le plus possible.
+    private Set<SortedBag<E>> computeSubsetsOfSize(int size) {
+        var distinct = new ArrayList<E>();
+        var available = new int[toSet().size()];
+        forEachEntry((e, n) -> {
+            available[distinct.size()] = n;
+            distinct.add(e);
+        });
+        // remaining[i] : nombre d'éléments disponibles à partir de l'index i
+        var remaining = new int[available.length + 1];
+        for (int i = available.length - 1; i >= 0; i--) remaining[i] = remaining[i + 1] + available[i];
+
+        var subsets = new ArrayList<SortedBag<E>>();
+        addSubsets(distinct, available, remaining, new int[available.length], 0, size, subsets);
+        return new ListSet<>(subsets);
+    }
+
+    private static <E extends Comparable<E>> void addSubsets(List<E> distinct, int[] available, int[] remaining,
+                                                             int[] chosen, int index, int missing,
+                                                             List<SortedBag<E>> subsets) {
+        if (missing == 0) {
+            var builder = new Builder<E>();
+            for (int i = 0; i < index; i++) builder.add(chosen[i], distinct.get(i));
+            subsets.add(builder.build());
+            return;
+        }
+        if (remaining[index] < missing) return;
+        for (int n = Math.min(available[index], missing); n >= 0; n--) {
+            chosen[index] = n;
+            addSubsets(distinct, available, remaining, chosen, index + 1, missing - n, subsets);
+        }
+    }
+
+    // Ensemble immuable d'éléments distincts, parcouru dans l'ordre de la liste donnée.
+    private static final class ListSet<T> extends AbstractSet<T> {
+        private final List<T> elements;
+
+        private ListSet(List<T> elements) {
+            this.elements = List.copyOf(elements);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return elements.iterator();
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
         }
-        return result;
     }
 
     /**
@@ -198,7 +364,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public List<E> toList() {
         var list = new ArrayList<E>(size());
-        elements.forEach((v, n) -> list.addAll(Collections.nCopies(n, v)));
+        forEachEntry((v, n) -> list.addAll(Collections.nCopies(n, v)));
         return list;
     }
 
@@ -208,7 +374,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public Stream<E> stream() {
         var builder = Stream.<E>builder();
-        elements.forEach((v, n) -> { for (var i = 0; i < n; i++) builder.add(v); });
+        forEachEntry((v, n) -> { for (var i = 0; i < n; i++) builder.add(v); });
         return builder.build();
     }
 
@@ -218,7 +384,31 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     @Override
     public Iterator<E> iterator() {
-        return stream().iterator();
+        if (universe == null)
+            return stream().iterator();
+
+        return new Iterator<>() {
+            private int ordinal = -1;
+            private int remaining = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining > 0) return true;
+                for (int i = ordinal + 1; i < counts.length; i++)
+                    if (counts[i] > 0) return true;
+                return false;
+            }
+
+            @Override
+            public E next() {
+                while (remaining == 0) {
+                    if (++ordinal == counts.length) throw new NoSuchElementException();
+                    remaining = counts[ordinal];
+                }
+                --remaining;
+                return universe[ordinal];
+            }
+        };
     }
 
     /**
@@ -226,7 +416,12 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return une table associant sa multiplicité à chaque élément de <code>this</code>
      */
     public Map<E, Integer> toMap() {
-        return elements;
+        if (map == null) {
+            var newElements = new TreeMap<E, Integer>();
+            forEachEntry(newElements::put);
+            map = Collections.unmodifiableSortedMap(newElements);
+        }
+        return map;
     }
 
     /**
@@ -236,7 +431,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return l'ensemble des éléments du multiensemble.
      */
     public Set<E> toSet() {
-        return elements.keySet();
+        return toMap().keySet();
     }
 
     /**
@@ -245,6 +440,13 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     @Override
     public int hashCode() {
+        // Même valeur que celle de la table des multiplicités (voir Map.hashCode).
+        var hash = 0;
+        if (universe != null) {
+            for (int i = 0; i < counts.length; i++)
+                if (counts[i] > 0) hash += universe[i].hashCode() ^ Integer.hashCode(counts[i]);
+            return hash;
+        }
         return elements.hashCode();
     }
 
@@ -255,8 +457,12 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     @Override
     public boolean equals(Object that) {
-        return (that instanceof SortedBag<?>)
-                && (elements.equals(((SortedBag<?>) that).elements));
+        if (!(that instanceof SortedBag<?>)) return false;
+        var thatBag = (SortedBag<?>) that;
+        if (size != thatBag.size) return false;
+        if (universe != null && universe == thatBag.universe)
+            return Arrays.equals(counts, thatBag.counts);
+        return toMap().equals(thatBag.toMap());
     }
 
     /**
@@ -266,7 +472,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
     @Override
     public String toString() {
         var j = new StringJoiner(", ", "{", "}");
-        elements.forEach((e, n) -> j.add((n > 1 ? n + "×" : "") + e));
+        forEachEntry((e, n) -> j.add((n > 1 ? n + "×" : "") + e));
         return j.toString();
     }
 
@@ -276,6 +482,11 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public static final class Builder<E extends Comparable<E>> {
         private final SortedMap<E, Integer> elements = new TreeMap<>();
+        // Multiplicités indexées par ordinal, utilisées à la place de la table
+        // dès que le premier élément ajouté est la valeur d'un type énuméré.
+        private E[] universe;
+        private int[] counts;
+        private int size;
 
         /**
          * Ajoute un nombre donné d'occurrences d'un élément au bâtisseur.
@@ -286,7 +497,16 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          */
         public Builder<E> add(int count, E element) {
             Preconditions.checkArgument(0 <= count);
-            if (count > 0) elements.merge(element, count, Integer::sum);
+            if (count == 0) return this;
+            if (size == 0 && universe == null) {
+                universe = universeOf(element);
+                if (universe != null) counts = new int[universe.length];
+            }
+            if (universe != null)
+                counts[((Enum<?>) element).ordinal()] += count;
+            else
+                elements.merge(element, count, Integer::sum);
+            size += count;
             return this;
         }
 
@@ -305,7 +525,16 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          * @return le bâtisseur (<code>this</code>)
          */
         public Builder<E> add(SortedBag<E> that) {
-            that.elements.forEach((e, c) -> elements.merge(e, c, Integer::sum));
+            if (that.universe != null && (universe == that.universe || size == 0)) {
+                if (universe == null) {
+                    universe = that.universe;
+                    counts = new int[universe.length];
+                }
+                for (int i = 0; i < counts.length; i++) counts[i] += that.counts[i];
+                size += that.size;
+                return this;
+            }
+            that.forEachEntry((e, c) -> add(c, e));
             return this;
         }
 
@@ -314,7 +543,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          * @return vrai ssi le bâtisseur est actuellement vide.
          */
         public boolean isEmpty() {
-            return elements.isEmpty();
+            return size == 0;
         }
 
         /**
@@ -322,9 +551,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          * @return le nombre d'éléments ajoutés au bâtisseur jusqu'à présent
          */
         public int size() {
-            return elements.values().stream()
-                    .mapToInt(Integer::intValue)
-                    .sum();
+            return size;
         }
 
         /**
@@ -332,7 +559,9 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          * @return un multiensemble contenant les éléments ajoutés à <code>this</code>
          */
         public SortedBag<E> build() {
-            return new SortedBag<>(new TreeMap<>(elements));
+            return universe != null && size > 0
+                    ? new SortedBag<>(universe, counts.clone(), size)
+                    : new SortedBag<>(new TreeMap<>(elements));
         }
     }
 }
@@ -16,7 +16,7 @@ import java.util.Random;
 
 public final class CardState extends PublicCardState {
 
-    private final Deck deck;
+    private final Deck<Card> deck;
     private final SortedBag<Card> discard;
 
     /**
@@ -24,7 +24,7 @@ public final class CardState extends PublicCardState {
      * @param deck
      * @param discard
      */
-    private CardState(List<Card> faceUpCards, Deck deck, SortedBag<Card> discard) {
+    private CardState(List<Card> faceUpCards, Deck<Card> deck, SortedBag<Card> discard) {
         super(faceUpCards, deck.size(), discard.size());
         this.deck = deck;
         this.discard = discard;
@@ -39,6 +39,21 @@ public final class CardState extends PublicCardState {
         return new CardState(deck.topCards(Constants.FACE_UP_CARDS_COUNT).toList(), deck.withoutTopCards(Constants.FACE_UP_CARDS_COUNT), SortedBag.of());
     }
 
+    //a CardState made of the given parts, e.g. a guess of the hidden ones of a PublicCardState
+    static CardState of(List<Card> faceUpCards, Deck<Card> deck, SortedBag<Card> discard) {
+        return new CardState(List.copyOf(faceUpCards), deck, discard);
+    }
+
+    //the deck, hidden to the players
+    Deck<Card> deck() {
+        return deck;
+    }
+
+    //the discarded cards, hidden to the players
+    SortedBag<Card> discards() {
+        return discard;
+    }
+
     /**
      * @param slot
      * @return a CardState with new faceUpCards and without topCard
@@ -46,7 +61,7 @@ public final class CardState extends PublicCardState {
     public CardState withDrawnFaceUpCard(int slot) {
         Preconditions.checkArgument(!isDeckEmpty());
         List<Card> newCards = new ArrayList<>(faceUpCards());
-        newCards.set(Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT), (Card) deck.topCard());
+        newCards.set(Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT), deck.topCard());
         return new CardState(newCards, deck.withoutTopCard(), discard);
     }
 
@@ -72,7 +87,7 @@ public final class CardState extends PublicCardState {
      */
     public Card topDeckCard() {
         Preconditions.checkArgument(!deck.isEmpty());
-        return (Card) deck.topCard();
+        return deck.topCard();
     }
 
     /**
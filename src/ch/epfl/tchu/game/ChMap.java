@@ -3,6 +3,7 @@ package ch.epfl.tchu.game;
 import ch.epfl.tchu.game.Route.Level;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class ChMap {
@@ -20,6 +21,17 @@ public final class ChMap {
         return ALL_TICKETS;
     }
 
+    // The index of the route in routes(), -1 if it isn't one of them
+    public static int routeIndex(Route route) {
+        return route.index();
+    }
+
+    // The index in routes() of the other route between the same stations as the route of the given index,
+    // -1 if that route is simple
+    public static int twinRouteIndex(int routeIndex) {
+        return TWIN_ROUTES[routeIndex];
+    }
+
     // Stations - cities
     private static final Station BAD = new Station(0, "Baden");
     private static final Station BAL = new Station(1, "Bâle");
@@ -232,6 +244,25 @@ public final class ChMap {
             itToNeighbors, itToNeighbors,
             frToNeighbors, frToNeighbors);
 
+    // Double routes
+    private static final int[] TWIN_ROUTES = twinRoutes();
+
+    static {
+        Route.assignIndices(ALL_ROUTES);
+        Ticket.assignKeys(ALL_TICKETS);
+    }
+
+    private static int[] twinRoutes() {
+        int[] twins = new int[ALL_ROUTES.size()];
+        Arrays.fill(twins, -1);
+        for (int i = 0; i < ALL_ROUTES.size(); i++) {
+            for (int j = 0; j < ALL_ROUTES.size(); j++) {
+                if (i != j && ALL_ROUTES.get(i).stations().equals(ALL_ROUTES.get(j).stations())) twins[i] = j;
+            }
+        }
+        return twins;
+    }
+
     private static Ticket ticketToNeighbors(List<Station> from, int de, int at, int it, int fr) {
         var trips = new ArrayList<Trip>();
         if (de != 0) trips.addAll(Trip.all(from, DE, de));
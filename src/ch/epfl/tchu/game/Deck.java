@@ -14,15 +14,20 @@ import java.util.*;
  */
 public final class Deck<C extends Comparable<C>> {
 
-    private final List<C> cards;
+    //shared by all the decks obtained from the same shuffled deck, never modified
+    private final Object[] cards;
+    //index of the top card in cards
+    private final int top;
 
     /**
      * creates a deck with cards of the game
      *
-     * @param cards
+     * @param cards the cards, which will never be modified
+     * @param top   the index of the top card of the deck
      */
-    private Deck(List<C> cards) {
-        this.cards = List.copyOf(cards);
+    private Deck(Object[] cards, int top) {
+        this.cards = cards;
+        this.top = top;
     }
 
     /**
@@ -34,21 +39,33 @@ public final class Deck<C extends Comparable<C>> {
     public static <C extends Comparable<C>> Deck<C> of(SortedBag<C> cards, Random rng) {
         List<C> mams = cards.toList();
         Collections.shuffle(mams, rng);
-        return new Deck<>(mams);
+        return new Deck<>(mams.toArray(), 0);
+    }
+
+    //a deck of the given cards in the given order, the first one being the top card
+    static <C extends Comparable<C>> Deck<C> ofOrdered(List<C> cards) {
+        return new Deck<>(cards.toArray(), 0);
+    }
+
+    //the cards of the deck, from the top one
+    List<C> toList() {
+        List<C> list = new ArrayList<>(size());
+        for (int i = top; i < cards.length; i++) list.add(card(i));
+        return list;
     }
 
     /**
      * @return the size of a given deck
      */
     public int size() {
-        return cards.size();
+        return cards.length - top;
     }
 
     /**
      * @return true if the deck is empty
      */
     public boolean isEmpty() {
-        return cards.isEmpty();
+        return size() == 0;
     }
 
     /**
@@ -56,15 +73,15 @@ public final class Deck<C extends Comparable<C>> {
      */
     public C topCard() {
         Preconditions.checkArgument(!isEmpty());
-        return cards.get(0);
+        return card(top);
     }
 
     /**
-     * @return a new  deck without the topCard
+     * @return a new  deck without the topCard, sharing the cards of this deck
      */
     public Deck<C> withoutTopCard() {
         Preconditions.checkArgument(!isEmpty());
-        return new Deck<>(cards).withoutTopCards(1);
+        return new Deck<>(cards, top + 1);
     }
 
     /**
@@ -72,16 +89,23 @@ public final class Deck<C extends Comparable<C>> {
      * @return the count topCards of the deck
      */
     public SortedBag<C> topCards(int count) {
-        Preconditions.checkArgument(count > Constants.DECK_SLOT && count <= cards.size());
-        return SortedBag.of(cards.subList(0, count));
+        Preconditions.checkArgument(count > Constants.DECK_SLOT && count <= size());
+        SortedBag.Builder<C> topCards = new SortedBag.Builder<>();
+        for (int i = top; i < top + count; i++) topCards.add(card(i));
+        return topCards.build();
     }
 
     /**
      * @param count
-     * @return a new deck without the count topCards of the deck
+     * @return a new deck without the count topCards of the deck, sharing the cards of this deck
      */
     public Deck<C> withoutTopCards(int count) {
-        Preconditions.checkArgument(count > Constants.DECK_SLOT && count <= cards.size());
-        return new Deck<>(cards.subList(count,cards.size()));
+        Preconditions.checkArgument(count > Constants.DECK_SLOT && count <= size());
+        return new Deck<>(cards, top + count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private C card(int index) {
+        return (C) cards[index];
     }
 }
\ No newline at end of file
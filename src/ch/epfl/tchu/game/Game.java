@@ -5,6 +5,8 @@ import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.gui.Info;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * the main unwinding of the game
@@ -15,6 +17,18 @@ import java.util.*;
 
 public final class Game {
 
+    private static final Consumer<GameState> NO_SNAPSHOTS = gameState -> {
+    };
+    private static final Spectator NO_SPECTATOR = new Spectator() {
+        @Override
+        public void receiveInfo(String info) {
+        }
+
+        @Override
+        public void updateState(PublicGameState newState) {
+        }
+    };
+
     private Game() {
     }
 
@@ -27,12 +41,115 @@ public final class Game {
      * @param rng
      */
     public static void play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets, Random rng) {
+        play(players, playerNames, tickets, new Messenger(players, false, NO_SPECTATOR), rng, GameLog.Writer.NONE, NO_SNAPSHOTS);
+    }
+
+    /**
+     * plays a game, handing its state to snapshots at the beginning of each turn, e.g. to save it with GameSnapshots
+     *
+     * @param players
+     * @param playerNames
+     * @param tickets
+     * @param rng
+     * @param snapshots   called with the state of the game before each turn, on the thread of the game
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets,
+                                              Random rng, Consumer<GameState> snapshots) {
+        return play(players, playerNames, tickets, rng, snapshots, NO_SPECTATOR);
+    }
+
+    /**
+     * plays a game watched by the given spectator, which receives the infos and the public states the players receive
+     *
+     * @param players
+     * @param playerNames
+     * @param tickets
+     * @param rng
+     * @param spectator   the spectator of the game, called on the thread of the game
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets,
+                                              Random rng, Spectator spectator) {
+        return play(players, playerNames, tickets, rng, NO_SNAPSHOTS, spectator);
+    }
+
+    /**
+     * plays a game watched by the given spectator, which receives the infos and the public states the players
+     * receive, and hands its state to snapshots at the beginning of each turn
+     *
+     * @param players
+     * @param playerNames
+     * @param tickets
+     * @param rng
+     * @param snapshots   called with the state of the game before each turn, on the thread of the game
+     * @param spectator   the spectator of the game, called on the thread of the game
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets,
+                                              Random rng, Consumer<GameState> snapshots, Spectator spectator) {
+        return play(players, playerNames, tickets, new Messenger(players, false, spectator), rng, GameLog.Writer.NONE, snapshots);
+    }
+
+    /**
+     * resumes a game from the state it had at the beginning of a turn, e.g. one saved by GameSnapshots, and plays it
+     * to its end as play does
+     *
+     * @param players
+     * @param playerNames
+     * @param gameState   the state of the game at the beginning of the turn
+     * @param rng
+     * @param snapshots   called with the state of the game before each turn, on the thread of the game
+     * @param spectator   the spectator of the game, called on the thread of the game
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> resume(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, GameState gameState,
+                                                Random rng, Consumer<GameState> snapshots, Spectator spectator) {
+        Preconditions.checkArgument(players.size() == PlayerId.COUNT && playerNames.size() == PlayerId.COUNT);
+        Messenger messenger = new Messenger(players, false, spectator);
+        PlayerId.ALL.forEach(player -> players.get(player).initPlayers(player, playerNames));
+        messenger.allUpdateState(gameState);
+        return playTurns(gameState, players, playerNames, playerInfos(playerNames), messenger, rng, GameLog.Writer.NONE, snapshots);
+    }
+
+    /**
+     * plays a game from the given seed and writes its log, from which GameLog.replay rebuilds it
+     *
+     * @param players
+     * @param playerNames
+     * @param tickets
+     * @param seed        the seed of the random generator of the game
+     * @param log         the writer of the log, which the caller closes
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets,
+                                              long seed, GameLog.Writer log) {
+        log.start(seed);
+        return play(players, playerNames, tickets, new Messenger(players, false, NO_SPECTATOR), new Random(seed), log, NO_SNAPSHOTS);
+    }
+
+    /**
+     * plays a whole game without anybody watching it : the players never receive any info, and only the current player
+     * receives the new state of the game, right before having to play
+     *
+     * @param players the players, named after their ids
+     * @param tickets
+     * @param rng
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> simulate(Map<PlayerId, Player> players, SortedBag<Ticket> tickets, Random rng) {
+        Map<PlayerId, String> playerNames = new EnumMap<>(PlayerId.class);
+        PlayerId.ALL.forEach(playerId -> playerNames.put(playerId, playerId.name()));
+        return play(players, playerNames, tickets, new Messenger(players, true, NO_SPECTATOR), rng, GameLog.Writer.NONE, NO_SNAPSHOTS);
+    }
+
+    private static Map<PlayerId, Integer> play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets,
+                                               Messenger messenger, Random rng, GameLog.Writer log, Consumer<GameState> snapshots) {
         Preconditions.checkArgument(players.size() == PlayerId.COUNT && playerNames.size() == PlayerId.COUNT);
         /**
          * informs the players of the progress of the game
          */
-        Map<PlayerId, Info> playerInfos = Map.of(PlayerId.PLAYER_1, new Info(playerNames.get(PlayerId.PLAYER_1)),
-                PlayerId.PLAYER_2, new Info(playerNames.get(PlayerId.PLAYER_2)));
+        Map<PlayerId, Info> playerInfos = playerInfos(playerNames);
 
         /**
          * the beginning of the game : all the initialisations;the players, who plays first, the shuffled deck, the initial tickets.
@@ -40,77 +157,119 @@ public final class Game {
         //Beginning of the game
         PlayerId.ALL.forEach(player -> players.get(player).initPlayers(player, playerNames));
         GameState gameState = GameState.initial(tickets, rng);
-        allReceiveInfo(players, playerInfos.get(gameState.currentPlayerId()).willPlayFirst());
+        messenger.allReceiveInfo(playerInfos.get(gameState.currentPlayerId())::willPlayFirst);
+        Map<PlayerId, SortedBag<Ticket>> initialTickets = new EnumMap<>(PlayerId.class);
         for (PlayerId playerId : PlayerId.ALL) {
-            players.get(playerId).setInitialTicketChoice(gameState.topTickets(Constants.INITIAL_TICKETS_COUNT));
-            allReceiveInfo(players, playerInfos.get(playerId).drewTickets(Constants.INITIAL_TICKETS_COUNT));
+            initialTickets.put(playerId, gameState.topTickets(Constants.INITIAL_TICKETS_COUNT));
+            players.get(playerId).setInitialTicketChoice(initialTickets.get(playerId));
+            messenger.allReceiveInfo(() -> playerInfos.get(playerId).drewTickets(Constants.INITIAL_TICKETS_COUNT));
             gameState = gameState.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT);
         }
-        allUpdateState(gameState, players);
-        for (PlayerId playerId : PlayerId.ALL)
-            gameState = gameState.withInitiallyChosenTickets(playerId, players.get(playerId).chooseInitialTickets());
+        messenger.allUpdateState(gameState);
+        for (PlayerId playerId : PlayerId.ALL) {
+            SortedBag<Ticket> chosenTickets = players.get(playerId).chooseInitialTickets();
+            log.initialTickets(playerId, initialTickets.get(playerId), chosenTickets);
+            gameState = gameState.withInitiallyChosenTickets(playerId, chosenTickets);
+        }
 
-        for (PlayerId playerId : PlayerId.ALL)
-            allReceiveInfo(players, playerInfos.get(playerId).keptTickets(gameState.playerState(playerId).ticketCount()));
+        for (PlayerId playerId : PlayerId.ALL) {
+            int ticketCount = gameState.playerState(playerId).ticketCount();
+            messenger.allReceiveInfo(() -> playerInfos.get(playerId).keptTickets(ticketCount));
+        }
+
+        return playTurns(gameState, players, playerNames, playerInfos, messenger, rng, log, snapshots);
+    }
 
+    private static Map<PlayerId, Info> playerInfos(Map<PlayerId, String> playerNames) {
+        return Map.of(PlayerId.PLAYER_1, new Info(playerNames.get(PlayerId.PLAYER_1)),
+                PlayerId.PLAYER_2, new Info(playerNames.get(PlayerId.PLAYER_2)));
+    }
+
+    //plays the turns from the given state to the end of the game, then announces its result
+    private static Map<PlayerId, Integer> playTurns(GameState gameState, Map<PlayerId, Player> players,
+                                                    Map<PlayerId, String> playerNames, Map<PlayerId, Info> playerInfos,
+                                                    Messenger messenger, Random rng, GameLog.Writer log, Consumer<GameState> snapshots) {
         //the middle of the game with the method playRound for each turn.
         //Midgame
-        int lastTurnCounter = 0;
-        while (lastTurnCounter <= 2) {
-            gameState = playRound(gameState, playerInfos, players, rng);
-            if (gameState.lastTurnBegins() || gameState.lastPlayer() != null)
-                ++lastTurnCounter;
+        boolean lastTurn;
+        do {
+            snapshots.accept(gameState);
+            gameState = playRound(gameState, playerInfos, players, messenger, rng, log);
+            lastTurn = GameRules.endsGame(gameState);
             gameState = gameState.forNextTurn();
-        }
+        } while (!lastTurn);
         //Endgame
-        GameState finalGame = gameState;
 
         //Announces the longest trail
-        Map<PlayerId, Trail> longestTrailMap = Map.of(PlayerId.PLAYER_1, Trail.longest(gameState.playerState(PlayerId.PLAYER_1).routes()),
-                PlayerId.PLAYER_2, Trail.longest(gameState.playerState(PlayerId.PLAYER_2).routes()));
-        PlayerId longestPlayerId;
-        if (longestTrailMap.get(PlayerId.PLAYER_1).length() > longestTrailMap.get(PlayerId.PLAYER_2).length())
-            longestPlayerId = PlayerId.PLAYER_1;
-        else {
-            if (longestTrailMap.get(PlayerId.PLAYER_1).length() < longestTrailMap.get(PlayerId.PLAYER_2).length())
-                longestPlayerId = PlayerId.PLAYER_2;
-            else longestPlayerId = null;
-        }
-
+        Map<PlayerId, Trail> longestTrailMap = GameRules.longestTrails(gameState);
+        Set<PlayerId> bonusPlayers = GameRules.longestTrailBonus(longestTrailMap);
 
-        if (longestPlayerId == null)
-            PlayerId.ALL.forEach(playerId -> players.get(playerId).receiveInfo(playerInfos.get(playerId).getsLongestTrailBonus(longestTrailMap.get(playerId))));
-        else {
-            Trail longestTrail = Trail.longest(gameState.playerState(longestPlayerId).routes());
-            allReceiveInfo(players, playerInfos.get(longestPlayerId).getsLongestTrailBonus(longestTrail));
+        if (messenger.headless) {
+            //nobody reads the infos
+        } else if (bonusPlayers.size() > 1) {
+            for (PlayerId playerId : PlayerId.ALL) {
+                String info = playerInfos.get(playerId).getsLongestTrailBonus(longestTrailMap.get(playerId));
+                players.get(playerId).receiveInfo(info);
+                //the spectator sees the bonus of both players
+                messenger.spectator.receiveInfo(info);
+            }
+        } else {
+            PlayerId longestPlayerId = bonusPlayers.iterator().next();
+            Trail longestTrail = longestTrailMap.get(longestPlayerId);
+            messenger.allReceiveInfo(() -> playerInfos.get(longestPlayerId).getsLongestTrailBonus(longestTrail));
         }
 
         //Puts the points in the map
-        Map<PlayerId, Integer> playerPoints = new EnumMap<>(PlayerId.class);
-        PlayerId.ALL.forEach(playerId -> playerPoints.put(playerId, finalGame.playerState(playerId).finalPoints() +
-                (longestPlayerId == playerId || longestPlayerId == null ? Constants.LONGEST_TRAIL_BONUS_POINTS : 0)));
+        Map<PlayerId, Integer> playerPoints = GameRules.finalPoints(gameState, bonusPlayers);
 
         //Announce the winner
-        allUpdateState(gameState, players);
+        messenger.updateState(gameState);
         int pointsPlayer1 = playerPoints.get(PlayerId.PLAYER_1);
         int pointsPlayer2 = playerPoints.get(PlayerId.PLAYER_2);
 
         if (pointsPlayer1 > pointsPlayer2)
-            allReceiveInfo(players, playerInfos.get(PlayerId.PLAYER_1).won(pointsPlayer1, pointsPlayer2));
+            messenger.allReceiveInfo(() -> playerInfos.get(PlayerId.PLAYER_1).won(pointsPlayer1, pointsPlayer2));
         if (pointsPlayer1 < pointsPlayer2)
-            allReceiveInfo(players, playerInfos.get(PlayerId.PLAYER_2).won(pointsPlayer2, pointsPlayer1));
+            messenger.allReceiveInfo(() -> playerInfos.get(PlayerId.PLAYER_2).won(pointsPlayer2, pointsPlayer1));
         if (pointsPlayer1 == pointsPlayer2)
-            allReceiveInfo(players, Info.draw(new ArrayList<>(playerNames.values()), pointsPlayer1));
+            messenger.allReceiveInfo(() -> Info.draw(new ArrayList<>(playerNames.values()), pointsPlayer1));
 
+        return playerPoints;
     }
 
+    /**
+     * sends the infos and the new states of the game to the players and to the spectator; when the game is headless,
+     * the infos are not even generated and a new state is only sent to the current player
+     */
+    private static final class Messenger {
+        private final Map<PlayerId, Player> players;
+        private final boolean headless;
+        private final Spectator spectator;
 
-    private static void allReceiveInfo(Map<PlayerId, Player> players, String info) {
-        PlayerId.ALL.forEach(player -> players.get(player).receiveInfo(info));
-    }
+        private Messenger(Map<PlayerId, Player> players, boolean headless, Spectator spectator) {
+            this.players = players;
+            this.headless = headless;
+            this.spectator = spectator;
+        }
 
-    private static void allUpdateState(GameState gameState, Map<PlayerId, Player> players) {
-        PlayerId.ALL.forEach(playerId -> players.get(playerId).updateState(gameState, gameState.playerState(playerId)));
+        private void allReceiveInfo(Supplier<String> info) {
+            if (headless) return;
+            String text = info.get();
+            PlayerId.ALL.forEach(player -> players.get(player).receiveInfo(text));
+            spectator.receiveInfo(text);
+        }
+
+        private void allUpdateState(GameState gameState) {
+            PlayerId.ALL.forEach(playerId -> players.get(playerId).updateState(gameState, gameState.playerState(playerId)));
+            spectator.updateState(gameState);
+        }
+
+        private void updateState(GameState gameState) {
+            if (headless)
+                players.get(gameState.currentPlayerId()).updateState(gameState, gameState.currentPlayerState());
+            else
+                allUpdateState(gameState);
+        }
     }
 
     /**
@@ -119,15 +278,17 @@ public final class Game {
      * @param gameState
      * @param playerInfos
      * @param players
+     * @param messenger
      * @param rng
+     * @param log         the writer of the log of the game
      * @return a new gameState after the player ended his turn
      */
     private static GameState playRound(GameState gameState, Map<PlayerId, Info> playerInfos, Map<PlayerId, Player> players,
-                                       Random rng) {
+                                       Messenger messenger, Random rng, GameLog.Writer log) {
         Player currentPlayer = players.get(gameState.currentPlayerId());
         Info currentPlayerInfo = playerInfos.get(gameState.currentPlayerId());
-        allReceiveInfo(players, currentPlayerInfo.canPlay());
-        allUpdateState(gameState, players);
+        messenger.allReceiveInfo(currentPlayerInfo::canPlay);
+        messenger.updateState(gameState);
         Player.TurnKind kind = currentPlayer.nextTurn();
         /**
          * at the beginning of his turn, the player has the choice between three different actions :
@@ -138,27 +299,32 @@ public final class Game {
              */
             case DRAW_TICKETS:
                 SortedBag<Ticket> chosenTickets = currentPlayer.chooseTickets(gameState.topTickets(Constants.IN_GAME_TICKETS_COUNT));
-                allReceiveInfo(players, currentPlayerInfo.drewTickets(Constants.IN_GAME_TICKETS_COUNT));
+                log.drawTickets(gameState.topTickets(Constants.IN_GAME_TICKETS_COUNT), chosenTickets);
+                messenger.allReceiveInfo(() -> currentPlayerInfo.drewTickets(Constants.IN_GAME_TICKETS_COUNT));
                 gameState = gameState.withChosenAdditionalTickets(gameState.topTickets(Constants.IN_GAME_TICKETS_COUNT), chosenTickets);
-                allReceiveInfo(players, currentPlayerInfo.keptTickets(chosenTickets.size()));
+                messenger.allReceiveInfo(() -> currentPlayerInfo.keptTickets(chosenTickets.size()));
                 break;
 
             /**
              * if he draws cards; if he draws the last card of the deck, the deck is recreated with the current discard.
              */
             case DRAW_CARDS:
+                int[] cardSlots = new int[2];
                 for (int i = 0; i < 2; i++) {
                     gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
-                    if (i == 1) allUpdateState(gameState, players);
+                    if (i == 1) messenger.updateState(gameState);
                     int cardSlot = currentPlayer.drawSlot();
+                    cardSlots[i] = cardSlot;
                     if (cardSlot == Constants.DECK_SLOT) {
-                        allReceiveInfo(players, currentPlayerInfo.drewBlindCard(gameState.topCard()));
-                        gameState = gameState.withBlindlyDrawnCard();
+                        Card drawnCard = gameState.topCard();
+                        messenger.allReceiveInfo(() -> currentPlayerInfo.drewBlindCard(drawnCard));
                     } else {
-                        allReceiveInfo(players, currentPlayerInfo.drewVisibleCard(gameState.cardState().faceUpCard(cardSlot)));
-                        gameState = gameState.withDrawnFaceUpCard(cardSlot);
+                        Card drawnCard = gameState.cardState().faceUpCard(cardSlot);
+                        messenger.allReceiveInfo(() -> currentPlayerInfo.drewVisibleCard(drawnCard));
                     }
+                    gameState = GameRules.withDrawnCard(gameState, cardSlot);
                 }
+                log.drawCards(cardSlots[0], cardSlots[1]);
 
                 break;
 
@@ -169,49 +335,33 @@ public final class Game {
 
                 Route route = currentPlayer.claimedRoute();
                 SortedBag<Card> initialClaimCards = currentPlayer.initialClaimCards();
-                gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
-                if (route.level() == Route.Level.OVERGROUND) {
-                    allReceiveInfo(players, currentPlayerInfo.claimedRoute(route, initialClaimCards));
-                    gameState = gameState.withClaimedRoute(route, initialClaimCards);
-                } else {
-                    allReceiveInfo(players, currentPlayerInfo.attemptsTunnelClaim(route, initialClaimCards));
-                    SortedBag.Builder<Card> additionalCardsBuilder = new SortedBag.Builder<>();
-
-                    // extraction of the 3 cards at the top of the deck
-                    for (int i = 0; i < 3; i++) {
-                        gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
-                        additionalCardsBuilder.add(gameState.topCard());
-                        gameState = gameState.withoutTopCard();
-                    }
-                    SortedBag<Card> additionalCards = additionalCardsBuilder.build();
-
-                    // number of additional cards that the player will have to put down to seize the tunnel
-                    int additionalCardsCount = route.additionalClaimCardsCount(initialClaimCards, additionalCards);
-                    allReceiveInfo(players, currentPlayerInfo.drewAdditionalCards(additionalCards, additionalCardsCount));
-                    if (additionalCardsCount >= 1) {
-                        // the player chooses which cards he wants to add
-                        List<SortedBag<Card>> possibleAdditionalCards = gameState.currentPlayerState().possibleAdditionalCards(additionalCardsCount, initialClaimCards);
-                        SortedBag<Card> chosenCards = SortedBag.of();
-                        if (!possibleAdditionalCards.isEmpty())
-                            chosenCards = currentPlayer.chooseAdditionalCards(possibleAdditionalCards);
-                        if (chosenCards.isEmpty())
-                            allReceiveInfo(players, currentPlayerInfo.didNotClaimRoute(route));
-                        else {
-                            SortedBag<Card> newCards = initialClaimCards.union(chosenCards);
-                            gameState = gameState.withClaimedRoute(route, newCards);
-                            allReceiveInfo(players, currentPlayerInfo.claimedRoute(route, newCards));
-                        }
-                    } else {
-                        gameState = gameState.withClaimedRoute(route, initialClaimCards);
-                        allReceiveInfo(players, currentPlayerInfo.claimedRoute(route, initialClaimCards));
-                    }
-                }
-                gameState = gameState.withMoreDiscardedCards(initialClaimCards);
+                if (route.level() == Route.Level.UNDERGROUND)
+                    messenger.allReceiveInfo(() -> currentPlayerInfo.attemptsTunnelClaim(route, initialClaimCards));
+                GameRules.Claim claim = GameRules.attemptClaim(gameState, route, initialClaimCards, rng);
+                if (route.level() == Route.Level.UNDERGROUND)
+                    messenger.allReceiveInfo(() -> currentPlayerInfo.drewAdditionalCards(claim.drawnCards(), claim.additionalCardsCount()));
 
+                // the player chooses which cards he wants to add, if he has to and can
+                SortedBag<Card> chosenCards = SortedBag.of();
+                if (claim.additionalCardsCount() >= 1) {
+                    List<SortedBag<Card>> possibleAdditionalCards = claim.gameState().currentPlayerState()
+                            .possibleAdditionalCards(claim.additionalCardsCount(), initialClaimCards);
+                    if (!possibleAdditionalCards.isEmpty())
+                        chosenCards = currentPlayer.chooseAdditionalCards(possibleAdditionalCards);
+                }
+                log.claimRoute(route, initialClaimCards, chosenCards);
+                SortedBag<Card> claimCards = claim.claimCards(chosenCards);
+                gameState = claim.claimed(chosenCards);
+                if (claimCards == null)
+                    messenger.allReceiveInfo(() -> currentPlayerInfo.didNotClaimRoute(route));
+                else
+                    messenger.allReceiveInfo(() -> currentPlayerInfo.claimedRoute(route, claimCards));
                 break;
         }
-        if (gameState.lastTurnBegins())
-            allReceiveInfo(players, currentPlayerInfo.lastTurnBegins(gameState.playerState(gameState.currentPlayerId()).carCount()));
+        if (gameState.lastTurnBegins()) {
+            int carCount = gameState.currentPlayerState().carCount();
+            messenger.allReceiveInfo(() -> currentPlayerInfo.lastTurnBegins(carCount));
+        }
         return gameState;
     }
 
@@ -0,0 +1,283 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The log of a game, from which the game can be replayed: it holds the seed of the game and every decision of the
+ * players, everything else following from the rules. The layout is fixed: a header of HEADER_SIZE bytes (the magic
+ * number, the version and the seed), then a record of RECORD_SIZE bytes per decision, whose first byte is its kind:
+ * <ul>
+ * <li>INITIAL_TICKETS: the player, and the mask of the tickets kept among the five dealt,</li>
+ * <li>DRAW_TICKETS: the mask of the tickets kept among the three drawn,</li>
+ * <li>DRAW_CARDS: the two slots drawn, -1 being the deck,</li>
+ * <li>CLAIM_ROUTE: the index of the route in ChMap.routes(), then the claim cards and the additional cards chosen
+ * for a tunnel, each given by the ordinal of their color (-1 if there is none), their number and their number of
+ * locomotives.</li>
+ * </ul>
+ * The tickets of the ticket masks are ordered as in their SortedBag.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class GameLog {
+
+    /**
+     * the size of the header of a log, in bytes
+     */
+    public static final int HEADER_SIZE = 16;
+    /**
+     * the size of a record of a log, in bytes
+     */
+    public static final int RECORD_SIZE = 8;
+
+    private static final int MAGIC = 0x74434875;
+    private static final short VERSION = 1;
+    private static final byte INITIAL_TICKETS = 0;
+    private static final byte DRAW_TICKETS = 1;
+    private static final byte DRAW_CARDS = 2;
+    private static final byte CLAIM_ROUTE = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private GameLog() {
+    }
+
+    /**
+     * Writes the log of a game, given to Game.play, through a buffer emptied when it is full and when it is closed
+     */
+    public static final class Writer implements Closeable {
+        //a writer writing nothing, for the games without log
+        static final Writer NONE = new Writer(null);
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = channel == null ? null : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        /**
+         * creates the given file, or empties it if it exists, to write a log in it
+         *
+         * @param file the file of the log
+         * @return the writer
+         * @throws UncheckedIOException if the file can't be opened
+         */
+        public static Writer open(Path file) {
+            try {
+                return new Writer(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void start(long seed) {
+            if (channel == null) return;
+            reserve(HEADER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(seed);
+        }
+
+        void initialTickets(PlayerId playerId, SortedBag<Ticket> dealtTickets, SortedBag<Ticket> keptTickets) {
+            if (channel == null) return;
+            record(INITIAL_TICKETS, playerId.ordinal(), ticketMask(dealtTickets, keptTickets), 0, 0, 0, 0, 0);
+        }
+
+        void drawTickets(SortedBag<Ticket> drawnTickets, SortedBag<Ticket> keptTickets) {
+            if (channel == null) return;
+            record(DRAW_TICKETS, ticketMask(drawnTickets, keptTickets), 0, 0, 0, 0, 0, 0);
+        }
+
+        void drawCards(int firstSlot, int secondSlot) {
+            if (channel == null) return;
+            record(DRAW_CARDS, firstSlot, secondSlot, 0, 0, 0, 0, 0);
+        }
+
+        void claimRoute(Route route, SortedBag<Card> initialCards, SortedBag<Card> additionalCards) {
+            if (channel == null) return;
+            int index = route.index();
+            Preconditions.checkArgument(index >= 0);
+            Card color = color(initialCards);
+            record(CLAIM_ROUTE, index, color == null ? -1 : color.ordinal(), initialCards.size(), initialCards.countOf(Card.LOCOMOTIVE),
+                    additionalCards.size(), additionalCards.countOf(Card.LOCOMOTIVE), 0);
+        }
+
+        private void record(byte kind, int b1, int b2, int b3, int b4, int b5, int b6, int b7) {
+            reserve(RECORD_SIZE);
+            buffer.put(kind).put((byte) b1).put((byte) b2).put((byte) b3).put((byte) b4).put((byte) b5).put((byte) b6).put((byte) b7);
+        }
+
+        private void reserve(int size) {
+            if (buffer.remaining() < size) writeBuffer();
+        }
+
+        private void writeBuffer() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * writes what is left in the buffer and closes the file
+         *
+         * @throws UncheckedIOException if the file can't be written
+         */
+        @Override
+        public void close() {
+            if (channel == null) return;
+            writeBuffer();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static int ticketMask(SortedBag<Ticket> options, SortedBag<Ticket> chosen) {
+        List<Ticket> optionList = options.toList();
+        Map<Ticket, Integer> remaining = new HashMap<>();
+        for (Ticket ticket : chosen) remaining.merge(ticket, 1, Integer::sum);
+        int mask = 0;
+        for (int i = 0; i < optionList.size(); i++) {
+            if (remaining.getOrDefault(optionList.get(i), 0) > 0) {
+                remaining.merge(optionList.get(i), -1, Integer::sum);
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private static SortedBag<Ticket> ticketsOf(SortedBag<Ticket> options, int mask) {
+        List<Ticket> optionList = options.toList();
+        SortedBag.Builder<Ticket> chosen = new SortedBag.Builder<>();
+        for (int i = 0; i < optionList.size(); i++) {
+            if ((mask & 1 << i) != 0) chosen.add(optionList.get(i));
+        }
+        return chosen.build();
+    }
+
+    //the color of the given cards which isn't the locomotive, null if there is none
+    private static Card color(SortedBag<Card> cards) {
+        for (Card card : Card.CARS) {
+            if (cards.contains(card)) return card;
+        }
+        return null;
+    }
+
+    //the given number of cards of the given color, locomotives included
+    private static SortedBag<Card> cardsOf(int color, int count, int locomotiveCount) {
+        return color < 0 || count == locomotiveCount
+                ? SortedBag.of(locomotiveCount, Card.LOCOMOTIVE)
+                : SortedBag.of(count - locomotiveCount, Card.ALL.get(color), locomotiveCount, Card.LOCOMOTIVE);
+    }
+
+    /**
+     * Replays the game of the given log, mapping the file in memory
+     *
+     * @param file    the file of the log
+     * @param tickets the tickets the game was played with
+     * @return the state at the end of the game
+     * @throws UncheckedIOException     if the file can't be read
+     * @throws IllegalArgumentException if the file isn't a log, or doesn't match the tickets
+     */
+    public static GameState replay(Path file, SortedBag<Ticket> tickets) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return replay(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), tickets);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays the game of a log, as Game.play played it
+     *
+     * @param log     the log, from its position to its limit
+     * @param tickets the tickets the game was played with
+     * @return the state at the end of the game
+     * @throws IllegalArgumentException if the log isn't a whole log, or doesn't match the tickets
+     */
+    public static GameState replay(ByteBuffer log, SortedBag<Ticket> tickets) {
+        Preconditions.checkArgument(log.remaining() >= HEADER_SIZE && log.getInt() == MAGIC && log.getShort() == VERSION);
+        log.getShort();
+        Random rng = new Random(log.getLong());
+
+        GameState gameState = GameState.initial(tickets, rng);
+        Map<PlayerId, SortedBag<Ticket>> dealtTickets = new EnumMap<>(PlayerId.class);
+        for (PlayerId playerId : PlayerId.ALL) {
+            dealtTickets.put(playerId, gameState.topTickets(Constants.INITIAL_TICKETS_COUNT));
+            gameState = gameState.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT);
+        }
+        for (int i = 0; i < PlayerId.COUNT; i++) {
+            Preconditions.checkArgument(log.remaining() >= RECORD_SIZE && log.get() == INITIAL_TICKETS);
+            PlayerId playerId = PlayerId.ALL.get(log.get());
+            gameState = gameState.withInitiallyChosenTickets(playerId, ticketsOf(dealtTickets.get(playerId), log.get()));
+            log.position(log.position() + RECORD_SIZE - 3);
+        }
+
+        boolean lastTurn;
+        do {
+            Preconditions.checkArgument(log.remaining() >= RECORD_SIZE);
+            int recordStart = log.position();
+            gameState = replayTurn(gameState, log, rng);
+            log.position(recordStart + RECORD_SIZE);
+            lastTurn = GameRules.endsGame(gameState);
+            gameState = gameState.forNextTurn();
+        } while (!lastTurn);
+        Preconditions.checkArgument(!log.hasRemaining());
+        return gameState;
+    }
+
+    //the turn of a record, with the rules Game.playRound plays it with
+    private static GameState replayTurn(GameState gameState, ByteBuffer log, Random rng) {
+        switch (log.get()) {
+            case DRAW_TICKETS:
+                SortedBag<Ticket> drawnTickets = gameState.topTickets(Constants.IN_GAME_TICKETS_COUNT);
+                return gameState.withChosenAdditionalTickets(drawnTickets, ticketsOf(drawnTickets, log.get()));
+
+            case DRAW_CARDS:
+                for (int i = 0; i < 2; i++) {
+                    gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
+                    gameState = GameRules.withDrawnCard(gameState, log.get());
+                }
+                return gameState;
+
+            case CLAIM_ROUTE:
+                Route route = ChMap.routes().get(log.get());
+                int color = log.get();
+                int initialCount = log.get();
+                SortedBag<Card> initialCards = cardsOf(color, initialCount, log.get());
+                int chosenCount = log.get();
+                SortedBag<Card> chosenCards = cardsOf(color, chosenCount, log.get());
+                return GameRules.attemptClaim(gameState, route, initialCards, rng).claimed(chosenCards);
+
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Computes the final points of a game, as Game.play does
+     *
+     * @param gameState the state at the end of the game
+     * @return the final points of each player, longest trail bonus included
+     */
+    public static Map<PlayerId, Integer> finalPoints(GameState gameState) {
+        return GameRules.finalPoints(gameState, GameRules.longestTrailBonus(GameRules.longestTrails(gameState)));
+    }
+}
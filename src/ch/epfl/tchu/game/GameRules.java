@@ -0,0 +1,158 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.SortedBag;
+
+import java.util.*;
+
+/**
+ * The rules of the turns and of the end of a game, shared by Game, which plays them with the choices of the players,
+ * and GameLog, which replays them with the choices of a log
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+final class GameRules {
+
+    private GameRules() {
+    }
+
+    /**
+     * @param gameState the state of the game, whose deck has been recreated if needed
+     * @param slot      the slot of a face up card, or Constants.DECK_SLOT
+     * @return the state in which the current player has drawn the card of the given slot
+     */
+    static GameState withDrawnCard(GameState gameState, int slot) {
+        return slot == Constants.DECK_SLOT ? gameState.withBlindlyDrawnCard() : gameState.withDrawnFaceUpCard(slot);
+    }
+
+    /**
+     * Begins the claim of a route by the current player: the deck is recreated if needed and, for a tunnel, the 3
+     * additional cards are drawn from it and discarded
+     *
+     * @param gameState    the state at the beginning of the claim
+     * @param route        the claimed route
+     * @param initialCards the cards the player initially plays
+     * @param rng          the random generator recreating the deck
+     * @return the claim, which only needs the additional cards chosen by the player
+     */
+    static Claim attemptClaim(GameState gameState, Route route, SortedBag<Card> initialCards, Random rng) {
+        gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
+        if (route.level() == Route.Level.OVERGROUND) return new Claim(gameState, route, initialCards, SortedBag.of(), 0);
+
+        SortedBag.Builder<Card> drawnCardsBuilder = new SortedBag.Builder<>();
+        for (int i = 0; i < Constants.ADDITIONAL_TUNNEL_CARDS; i++) {
+            gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
+            drawnCardsBuilder.add(gameState.topCard());
+            gameState = gameState.withoutTopCard();
+        }
+        SortedBag<Card> drawnCards = drawnCardsBuilder.build();
+        //the 3 cards go to the discard whether the tunnel is claimed or not
+        return new Claim(gameState.withMoreDiscardedCards(drawnCards), route, initialCards, drawnCards,
+                route.additionalClaimCardsCount(initialCards, drawnCards));
+    }
+
+    /**
+     * @param gameState the state at the end of a turn, before forNextTurn
+     * @return true iff this turn is the last one of the game, the one of the player who began the last round
+     */
+    static boolean endsGame(GameState gameState) {
+        return gameState.lastPlayer() == gameState.currentPlayerId();
+    }
+
+    /**
+     * @param gameState the state at the end of the game
+     * @return the longest trail of each player
+     */
+    static Map<PlayerId, Trail> longestTrails(GameState gameState) {
+        Map<PlayerId, Trail> trails = new EnumMap<>(PlayerId.class);
+        for (PlayerId playerId : PlayerId.ALL) trails.put(playerId, Trail.longest(gameState.playerState(playerId).routes()));
+        return trails;
+    }
+
+    /**
+     * @param longestTrails the longest trail of each player
+     * @return the players who get the longest trail bonus, all of them when their trails are as long
+     */
+    static Set<PlayerId> longestTrailBonus(Map<PlayerId, Trail> longestTrails) {
+        int longest = 0;
+        for (Trail trail : longestTrails.values()) longest = Math.max(longest, trail.length());
+        Set<PlayerId> players = EnumSet.noneOf(PlayerId.class);
+        for (PlayerId playerId : PlayerId.ALL) {
+            if (longestTrails.get(playerId).length() == longest) players.add(playerId);
+        }
+        return players;
+    }
+
+    /**
+     * @param gameState    the state at the end of the game
+     * @param bonusPlayers the players who get the longest trail bonus
+     * @return the final points of each player, longest trail bonus included
+     */
+    static Map<PlayerId, Integer> finalPoints(GameState gameState, Set<PlayerId> bonusPlayers) {
+        Map<PlayerId, Integer> points = new EnumMap<>(PlayerId.class);
+        for (PlayerId playerId : PlayerId.ALL) {
+            points.put(playerId, gameState.playerState(playerId).finalPoints()
+                    + (bonusPlayers.contains(playerId) ? Constants.LONGEST_TRAIL_BONUS_POINTS : 0));
+        }
+        return Collections.unmodifiableMap(points);
+    }
+
+    /**
+     * A claim of a route whose additional cards, if any, have been drawn
+     */
+    static final class Claim {
+        private final GameState gameState;
+        private final Route route;
+        private final SortedBag<Card> initialCards;
+        private final SortedBag<Card> drawnCards;
+        private final int additionalCardsCount;
+
+        private Claim(GameState gameState, Route route, SortedBag<Card> initialCards, SortedBag<Card> drawnCards,
+                      int additionalCardsCount) {
+            this.gameState = gameState;
+            this.route = route;
+            this.initialCards = initialCards;
+            this.drawnCards = drawnCards;
+            this.additionalCardsCount = additionalCardsCount;
+        }
+
+        /**
+         * @return the state once the additional cards have been drawn, in which the player chooses them
+         */
+        GameState gameState() {
+            return gameState;
+        }
+
+        /**
+         * @return the 3 cards drawn for a tunnel, none for an overground route
+         */
+        SortedBag<Card> drawnCards() {
+            return drawnCards;
+        }
+
+        /**
+         * @return the number of additional cards the player must play
+         */
+        int additionalCardsCount() {
+            return additionalCardsCount;
+        }
+
+        /**
+         * @param chosenCards the additional cards chosen by the player, empty if he gives up or has no choice
+         * @return the cards the route is claimed with, null if it isn't claimed
+         */
+        SortedBag<Card> claimCards(SortedBag<Card> chosenCards) {
+            if (additionalCardsCount == 0) return initialCards;
+            return chosenCards.isEmpty() ? null : initialCards.union(chosenCards);
+        }
+
+        /**
+         * @param chosenCards the additional cards chosen by the player, empty if he gives up or has no choice
+         * @return the state at the end of the claim
+         */
+        GameState claimed(SortedBag<Card> chosenCards) {
+            SortedBag<Card> claimCards = claimCards(chosenCards);
+            return claimCards == null ? gameState : gameState.withClaimedRoute(route, claimCards);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.SortedBag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The snapshots of the games being played, from which they can be resumed with Game.resume. The states saved are
+ * written by a background thread, which writes together all those saved meanwhile, keeping only the last one of each
+ * game, then forces them to the disk at once. The file is a sequence of records: the id of the game (a long), the size
+ * of the snapshot (an int, 0 once the game has ended) and the state of the game as written by write. It is rewritten
+ * with only the last snapshot of each game once it exceeds COMPACTION_SIZE bytes, and twice its size after the last
+ * rewriting. If the file can't be written anymore, the background thread stops, the states saved afterwards are
+ * dropped, and close throws the error.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class GameSnapshots implements Closeable {
+
+    /**
+     * The maximum number of bytes of a state written by write
+     */
+    public static final int MAX_SIZE = 1024;
+    /**
+     * The time during which the background thread waits for more states to write together, in milliseconds
+     */
+    public static final long BATCH_DELAY_MILLIS = 50;
+
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final long COMPACTION_SIZE = 1 << 20;
+    private static final int NO_PLAYER = -1;
+    private static final List<Ticket> TICKETS = ChMap.tickets();
+    private static final Map<Ticket, Integer> TICKET_INDICES = ticketIndices();
+
+    private final Path file;
+    private FileChannel channel;
+    //the last state saved of each game not written yet, null once the game has ended, guarded by this
+    private final Map<Long, GameState> pending = new LinkedHashMap<>();
+    private boolean closed;
+    //the error which stopped the background thread, guarded by this
+    private IOException failure;
+    //the last snapshot written of each game, used by the background thread only
+    private final Map<Long, byte[]> written = new HashMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_HEADER_SIZE + MAX_SIZE);
+    private final Thread writer;
+    private final Set<Long> openedGameIds;
+    private final long nextGameId;
+    //the size above which the file is compacted, used by the background thread only
+    private long compactionSize = COMPACTION_SIZE;
+
+    private GameSnapshots(Path file, FileChannel channel, Map<Long, byte[]> written) {
+        this.file = file;
+        this.channel = channel;
+        this.written.putAll(written);
+        this.openedGameIds = Set.copyOf(written.keySet());
+        this.nextGameId = written.keySet().stream().mapToLong(gameId -> gameId + 1).max().orElse(0);
+        this.writer = new Thread(this::writeSnapshots, "snapshot writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static Map<Ticket, Integer> ticketIndices() {
+        Map<Ticket, Integer> indices = new HashMap<>();
+        for (int i = TICKETS.size() - 1; i >= 0; i--) indices.put(TICKETS.get(i), i);
+        return indices;
+    }
+
+    /**
+     * Opens the given file of snapshots, creating it if it doesn't exist, to add the snapshots of new states to those
+     * it already has
+     *
+     * @param file the file of the snapshots
+     * @return the snapshots
+     * @throws UncheckedIOException if the file can't be opened
+     */
+    public static GameSnapshots open(Path file) {
+        Map<Long, byte[]> written = new HashMap<>();
+        try {
+            long size = Files.exists(file) ? readRecords(file, written) : 0;
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            //the new records follow the last whole one
+            channel.truncate(size);
+            channel.position(size);
+            return new GameSnapshots(file, channel, written);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the last snapshot of each game which hasn't ended from the given file
+     *
+     * @param file the file of the snapshots
+     * @return the states of the games, by id
+     * @throws UncheckedIOException if the file can't be read
+     */
+    public static Map<Long, GameState> load(Path file) {
+        Map<Long, byte[]> snapshots = new TreeMap<>();
+        try {
+            readRecords(file, snapshots);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<Long, GameState> gameStates = new LinkedHashMap<>();
+        snapshots.forEach((gameId, snapshot) -> gameStates.put(gameId, read(ByteBuffer.wrap(snapshot))));
+        return Collections.unmodifiableMap(gameStates);
+    }
+
+    //puts the last snapshot of each game which hasn't ended in the map, ignoring a record cut by a crash, and returns
+    //the size of the whole records
+    private static long readRecords(Path file, Map<Long, byte[]> snapshots) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int end = 0;
+            while (records.remaining() >= RECORD_HEADER_SIZE) {
+                long gameId = records.getLong();
+                int size = records.getInt();
+                if (size < 0 || size > records.remaining()) break;
+                end = records.position() + size;
+                if (size == 0) {
+                    snapshots.remove(gameId);
+                } else {
+                    byte[] snapshot = new byte[size];
+                    records.get(snapshot);
+                    snapshots.put(gameId, snapshot);
+                }
+            }
+            return end;
+        }
+    }
+
+    /**
+     * @return the ids of the games which hadn't ended when the snapshots were opened
+     */
+    public Set<Long> openedGameIds() {
+        return openedGameIds;
+    }
+
+    /**
+     * @return the id following the largest one of the games which hadn't ended when the snapshots were opened, from
+     * which the new games can be numbered
+     */
+    public long nextGameId() {
+        return nextGameId;
+    }
+
+    /**
+     * Saves the state of a game, which the background thread writes later on; only the last state saved is written
+     * if several are saved meanwhile, and none once the file can't be written anymore
+     *
+     * @param gameId    the id of the game
+     * @param gameState the state of the game
+     * @throws IllegalStateException if the snapshots are closed
+     */
+    public void save(long gameId, GameState gameState) {
+        put(gameId, Objects.requireNonNull(gameState));
+    }
+
+    /**
+     * @param gameId the id of the game
+     * @return the consumer saving the states of the given game, to give to Game.play
+     */
+    public Consumer<GameState> of(long gameId) {
+        return gameState -> save(gameId, gameState);
+    }
+
+    /**
+     * Forgets a game which has ended, so that it isn't resumed
+     *
+     * @param gameId the id of the game
+     * @throws IllegalStateException if the snapshots are closed
+     */
+    public void end(long gameId) {
+        put(gameId, null);
+    }
+
+    private synchronized void put(long gameId, GameState gameState) {
+        if (closed) throw new IllegalStateException();
+        //the background thread has stopped and reported its error, nothing would write the state
+        if (failure != null) return;
+        pending.put(gameId, gameState);
+        notifyAll();
+    }
+
+    /**
+     * Writes the states saved and not written yet, then closes the file
+     *
+     * @throws UncheckedIOException if the file can't be written, or couldn't be written by the background thread
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            if (failure != null) throw new UncheckedIOException(failure);
+        }
+    }
+
+    //the loop of the background thread
+    private void writeSnapshots() {
+        try {
+            Map<Long, GameState> batch;
+            while ((batch = nextBatch()) != null) {
+                for (Map.Entry<Long, GameState> entry : batch.entrySet()) {
+                    writeRecord(entry.getKey(), entry.getValue());
+                }
+                channel.force(false);
+                if (channel.size() > compactionSize) compact();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            synchronized (this) {
+                failure = e;
+                pending.clear();
+            }
+        } catch (InterruptedException e) {
+            //the snapshots are abandoned
+        }
+    }
+
+    //the states saved since the last batch, once there are some and the batch delay is over, null once closed
+    private synchronized Map<Long, GameState> nextBatch() throws InterruptedException {
+        while (pending.isEmpty() && !closed) wait();
+        if (pending.isEmpty()) return null;
+        long deadline = System.nanoTime() + BATCH_DELAY_MILLIS * 1_000_000;
+        long remaining;
+        while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+            wait(remaining / 1_000_000 + 1);
+        }
+        Map<Long, GameState> batch = new LinkedHashMap<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void writeRecord(long gameId, GameState gameState) throws IOException {
+        buffer.clear();
+        buffer.putLong(gameId).putInt(0);
+        if (gameState != null) write(gameState, buffer);
+        int size = buffer.position() - RECORD_HEADER_SIZE;
+        buffer.putInt(Long.BYTES, size);
+        buffer.flip();
+
+        if (size == 0) {
+            written.remove(gameId);
+        } else {
+            byte[] snapshot = new byte[size];
+            buffer.position(RECORD_HEADER_SIZE);
+            buffer.get(snapshot);
+            buffer.rewind();
+            written.put(gameId, snapshot);
+        }
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    //rewrites the file with the last snapshot of each game which hasn't ended, replacing it at once; if it can't be
+    //replaced, the records go on being added to the current file and the next try waits for it to have doubled
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compacting");
+        FileChannel compactedChannel = null;
+        try {
+            compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            for (Map.Entry<Long, byte[]> entry : written.entrySet()) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + entry.getValue().length);
+                record.putLong(entry.getKey()).putInt(entry.getValue().length).put(entry.getValue()).flip();
+                while (record.hasRemaining()) compactedChannel.write(record);
+            }
+            compactedChannel.force(false);
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            //a partial compacted file is truncated by the next try
+            if (compactedChannel != null) {
+                try {
+                    compactedChannel.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            e.printStackTrace();
+            compactionSize = Math.max(COMPACTION_SIZE, 2 * channel.size());
+            return;
+        }
+        //the channel of the compacted file now writes to the file
+        FileChannel oldChannel = channel;
+        channel = compactedChannel;
+        compactionSize = Math.max(COMPACTION_SIZE, 2 * channel.size());
+        //the old channel no longer writes to the file, failing to close it doesn't stop the writing either
+        try {
+            oldChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the whole state of a game, hidden cards and tickets included: the ticket deck, the card state, the
+     * current and last players, then the state of each player. The cards are written as their ordinal, the tickets as
+     * their index in ChMap.tickets() and the routes as a mask over ChMap.routes().
+     *
+     * @param gameState the state to write
+     * @param buffer    the buffer in which it is written, with at least MAX_SIZE bytes remaining
+     */
+    public static void write(GameState gameState, ByteBuffer buffer) {
+        writeTickets(gameState.ticketDeck().toList(), buffer);
+
+        CardState cardState = gameState.fullCardState();
+        for (Card card : cardState.faceUpCards()) buffer.put((byte) card.ordinal());
+        List<Card> deck = cardState.deck().toList();
+        buffer.putShort((short) deck.size());
+        for (Card card : deck) buffer.put((byte) card.ordinal());
+        writeCards(cardState.discards(), buffer);
+
+        buffer.put((byte) gameState.currentPlayerId().ordinal());
+        buffer.put((byte) (gameState.lastPlayer() == null ? NO_PLAYER : gameState.lastPlayer().ordinal()));
+        for (PlayerId playerId : PlayerId.ALL) {
+            PlayerState playerState = gameState.playerState(playerId);
+            writeTickets(playerState.tickets().toList(), buffer);
+            writeCards(playerState.cards(), buffer);
+            for (long bits : playerState.routeBits()) buffer.putLong(bits);
+        }
+    }
+
+    /**
+     * Reads a state written by write
+     *
+     * @param buffer the buffer from which the state is read
+     * @return the state read
+     * @throws IllegalArgumentException if the buffer doesn't hold a whole state
+     */
+    public static GameState read(ByteBuffer buffer) {
+        try {
+            Deck<Ticket> ticketDeck = Deck.ofOrdered(readTickets(buffer));
+
+            List<Card> faceUpCards = new ArrayList<>(Constants.FACE_UP_CARDS_COUNT);
+            for (int i = 0; i < Constants.FACE_UP_CARDS_COUNT; i++) faceUpCards.add(Card.ALL.get(buffer.get()));
+            int deckSize = buffer.getShort();
+            List<Card> deck = new ArrayList<>(deckSize);
+            for (int i = 0; i < deckSize; i++) deck.add(Card.ALL.get(buffer.get()));
+            CardState cardState = CardState.of(faceUpCards, Deck.ofOrdered(deck), readCards(buffer));
+
+            PlayerId currentPlayerId = PlayerId.ALL.get(buffer.get());
+            int lastPlayer = buffer.get();
+            Map<PlayerId, PlayerState> playerStates = new EnumMap<>(PlayerId.class);
+            for (PlayerId playerId : PlayerId.ALL) {
+                SortedBag<Ticket> tickets = SortedBag.of(readTickets(buffer));
+                SortedBag<Card> cards = readCards(buffer);
+                long[] routeBits = new long[(ChMap.routes().size() + Long.SIZE - 1) / Long.SIZE];
+                for (int i = 0; i < routeBits.length; i++) routeBits[i] = buffer.getLong();
+                playerStates.put(playerId, PlayerState.of(new PublicPlayerState(tickets.size(), cards.size(), routeBits), tickets, cards));
+            }
+            return GameState.of(ticketDeck, cardState, currentPlayerId, playerStates,
+                    lastPlayer == NO_PLAYER ? null : PlayerId.ALL.get(lastPlayer));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void writeTickets(List<Ticket> tickets, ByteBuffer buffer) {
+        buffer.put((byte) tickets.size());
+        for (Ticket ticket : tickets) buffer.put((byte) (int) TICKET_INDICES.get(ticket));
+    }
+
+    private static List<Ticket> readTickets(ByteBuffer buffer) {
+        int ticketCount = buffer.get() & 0xFF;
+        List<Ticket> tickets = new ArrayList<>(ticketCount);
+        for (int i = 0; i < ticketCount; i++) tickets.add(TICKETS.get(buffer.get() & 0xFF));
+        return tickets;
+    }
+
+    //the count of each card, there are never more than 255 cards of a kind
+    private static void writeCards(SortedBag<Card> cards, ByteBuffer buffer) {
+        for (Card card : Card.ALL) buffer.put((byte) cards.countOf(card));
+    }
+
+    private static SortedBag<Card> readCards(ByteBuffer buffer) {
+        SortedBag.Builder<Card> cards = new SortedBag.Builder<>();
+        for (Card card : Card.ALL) cards.add(buffer.get() & 0xFF, card);
+        return cards.build();
+    }
+}
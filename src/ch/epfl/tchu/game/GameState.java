@@ -19,21 +19,49 @@ public final class GameState extends PublicGameState {
     private final CardState cardState;
 
     /**
-     * that constructs a gameState
+     * that constructs a gameState, sharing the map of the states of the players with its public part
      *
      * @param tickets
      * @param cardState
      * @param currentPlayerId
-     * @param playerState
+     * @param playerState      an immutable map, kept as it is
      * @param lastPlayer
+     * @param claimedRouteBits the bits of the claimed routes if they are the ones of a previous state, null otherwise
      */
-    private GameState(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> playerState, PlayerId lastPlayer) {
-        super(tickets.size(), cardState, currentPlayerId, Map.copyOf(playerState), lastPlayer);
-        this.playerState = Map.copyOf(playerState);
+    private GameState(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> playerState, PlayerId lastPlayer, long[] claimedRouteBits) {
+        super(tickets.size(), cardState, currentPlayerId, playerState, lastPlayer, claimedRouteBits);
+        this.playerState = playerState;
         this.tickets = Objects.requireNonNull(tickets);
         this.cardState = Objects.requireNonNull(cardState);
     }
 
+    //a state with the same players (and so the same claimed routes) as this one
+    private GameState withSamePlayers(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, PlayerId lastPlayer) {
+        return new GameState(tickets, cardState, currentPlayerId, playerState, lastPlayer, claimedRouteBits());
+    }
+
+    //the states of the players, where the one of the given player is replaced by the given one
+    private Map<PlayerId, PlayerState> playerStateWith(PlayerId playerId, PlayerState newState) {
+        Map<PlayerId, PlayerState> newMap = new EnumMap<>(playerState);
+        newMap.put(playerId, newState);
+        return Collections.unmodifiableMap(newMap);
+    }
+
+    //a gameState made of the given parts, e.g. a guess of the hidden parts of a PublicGameState
+    static GameState of(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> playerState, PlayerId lastPlayer) {
+        return new GameState(tickets, cardState, currentPlayerId, Collections.unmodifiableMap(new EnumMap<>(playerState)), lastPlayer, null);
+    }
+
+    //the ticket deck, hidden to the players
+    Deck<Ticket> ticketDeck() {
+        return tickets;
+    }
+
+    //the state of the cards with its hidden parts
+    CardState fullCardState() {
+        return cardState;
+    }
+
     /**
      * @param tickets
      * @param rng
@@ -48,7 +76,7 @@ public final class GameState extends PublicGameState {
             cardDeck = cardDeck.withoutTopCards(Constants.INITIAL_CARDS_COUNT);
         }
         PlayerId currentPlayer = PlayerId.ALL.get(rng.nextInt(PlayerId.COUNT));
-        return new GameState(ticketDeck, CardState.of(cardDeck), currentPlayer, newMap, null);
+        return new GameState(ticketDeck, CardState.of(cardDeck), currentPlayer, Collections.unmodifiableMap(newMap), null, null);
     }
 
 
@@ -82,7 +110,7 @@ public final class GameState extends PublicGameState {
      */
     public GameState withoutTopTickets(int count) {
         Preconditions.checkArgument(0 <= count && count <= ticketsCount());
-        return new GameState(tickets.withoutTopCards(count), cardState, currentPlayerId(), playerState, lastPlayer());
+        return withSamePlayers(tickets.withoutTopCards(count), cardState, currentPlayerId(), lastPlayer());
     }
 
     /**
@@ -98,7 +126,7 @@ public final class GameState extends PublicGameState {
      */
     public GameState withoutTopCard() {
         Preconditions.checkArgument(cardState != null && !cardState.isDeckEmpty());
-        return new GameState(tickets, cardState.withoutTopDeckCard(), currentPlayerId(), playerState, lastPlayer());
+        return withSamePlayers(tickets, cardState.withoutTopDeckCard(), currentPlayerId(), lastPlayer());
     }
 
     /**
@@ -106,7 +134,7 @@ public final class GameState extends PublicGameState {
      * @return a new gameState with cards added to the discard
      */
     public GameState withMoreDiscardedCards(SortedBag<Card> discardedCards) {
-        return new GameState(tickets, cardState.withMoreDiscardedCards(discardedCards), currentPlayerId(), playerState, lastPlayer());
+        return withSamePlayers(tickets, cardState.withMoreDiscardedCards(discardedCards), currentPlayerId(), lastPlayer());
     }
 
     /**
@@ -115,7 +143,7 @@ public final class GameState extends PublicGameState {
      */
     public GameState withCardsDeckRecreatedIfNeeded(Random rng) {
         if (cardState.isDeckEmpty()) {
-            return new GameState(tickets, cardState.withDeckRecreatedFromDiscards(rng), currentPlayerId(), playerState, lastPlayer());
+            return withSamePlayers(tickets, cardState.withDeckRecreatedFromDiscards(rng), currentPlayerId(), lastPlayer());
         } else {
             return this;
         }
@@ -128,9 +156,8 @@ public final class GameState extends PublicGameState {
      */
     public GameState withInitiallyChosenTickets(PlayerId playerId, SortedBag<Ticket> chosenTickets) {
         Preconditions.checkArgument(playerState.get(playerId).tickets().isEmpty());
-        Map<PlayerId, PlayerState> newMap = new EnumMap<>(playerState);
-        newMap.put(playerId, newMap.get(playerId).withAddedTickets(chosenTickets));
-        return new GameState(tickets, cardState, currentPlayerId(), newMap, lastPlayer());
+        Map<PlayerId, PlayerState> newMap = playerStateWith(playerId, playerState.get(playerId).withAddedTickets(chosenTickets));
+        return new GameState(tickets, cardState, currentPlayerId(), newMap, lastPlayer(), claimedRouteBits());
     }
 
     /**
@@ -140,15 +167,8 @@ public final class GameState extends PublicGameState {
      */
     public GameState withChosenAdditionalTickets(SortedBag<Ticket> drawnTickets, SortedBag<Ticket> chosenTickets) {
         Preconditions.checkArgument(drawnTickets.contains(chosenTickets));
-        Map<PlayerId, PlayerState> newMap = new EnumMap<>(PlayerId.class);
-        for (PlayerId playerId : PlayerId.ALL) {
-            if (playerId == currentPlayerId()) {
-                newMap.put(playerId, playerState.get(playerId).withAddedTickets(chosenTickets));
-            } else {
-                newMap.put(playerId, playerState.get(playerId));
-            }
-        }
-        return new GameState(tickets.withoutTopCards(Constants.IN_GAME_TICKETS_COUNT), cardState, currentPlayerId(), newMap, lastPlayer());
+        Map<PlayerId, PlayerState> newMap = playerStateWith(currentPlayerId(), currentPlayerState().withAddedTickets(chosenTickets));
+        return new GameState(tickets.withoutTopCards(Constants.IN_GAME_TICKETS_COUNT), cardState, currentPlayerId(), newMap, lastPlayer(), claimedRouteBits());
     }
 
     /**
@@ -158,10 +178,9 @@ public final class GameState extends PublicGameState {
      */
     public GameState withDrawnFaceUpCard(int slot) {
         //Preconditions.checkArgument(canDrawCards());
-        Map<PlayerId, PlayerState> newMap = new EnumMap<>(playerState);
-        newMap.put(currentPlayerId(), playerState.get(currentPlayerId()).withAddedCard(cardState.faceUpCard(slot)));
+        Map<PlayerId, PlayerState> newMap = playerStateWith(currentPlayerId(), currentPlayerState().withAddedCard(cardState.faceUpCard(slot)));
         CardState newCardState = cardState.withDrawnFaceUpCard(slot);
-        return new GameState(tickets, newCardState, currentPlayerId(), newMap, lastPlayer());
+        return new GameState(tickets, newCardState, currentPlayerId(), newMap, lastPlayer(), claimedRouteBits());
     }
 
     /**
@@ -169,9 +188,8 @@ public final class GameState extends PublicGameState {
      */
     public GameState withBlindlyDrawnCard() {
         //Preconditions.checkArgument(canDrawCards());
-        Map<PlayerId, PlayerState> newMap = new EnumMap<>(playerState);
-        newMap.put(currentPlayerId(), playerState.get(currentPlayerId()).withAddedCard(cardState.topDeckCard()));
-        return new GameState(tickets, cardState.withoutTopDeckCard(), currentPlayerId(), newMap, lastPlayer());
+        Map<PlayerId, PlayerState> newMap = playerStateWith(currentPlayerId(), currentPlayerState().withAddedCard(cardState.topDeckCard()));
+        return new GameState(tickets, cardState.withoutTopDeckCard(), currentPlayerId(), newMap, lastPlayer(), claimedRouteBits());
     }
 
     /**
@@ -180,14 +198,8 @@ public final class GameState extends PublicGameState {
      * @return a state identical to the receiver but in which the current player has seized the given route by means of the given cards
      */
     public GameState withClaimedRoute(Route route, SortedBag<Card> cards) {
-        Map<PlayerId, PlayerState> newMap = new EnumMap<>(PlayerId.class);
-        for (PlayerId playerId : PlayerId.ALL) {
-            if (playerId == currentPlayerId())
-                newMap.put(playerId, playerState.get(playerId).withClaimedRoute(route, cards));
-            else
-                newMap.put(playerId, playerState.get(playerId));
-        }
-        return new GameState(tickets, cardState.withMoreDiscardedCards(cards), currentPlayerId(), newMap, lastPlayer());
+        Map<PlayerId, PlayerState> newMap = playerStateWith(currentPlayerId(), currentPlayerState().withClaimedRoute(route, cards));
+        return new GameState(tickets, cardState.withMoreDiscardedCards(cards), currentPlayerId(), newMap, lastPlayer(), null);
     }
 
     /**
@@ -202,7 +214,7 @@ public final class GameState extends PublicGameState {
      */
     public GameState forNextTurn() {
         PlayerId lastPlayerId = lastTurnBegins() ? currentPlayerId() : lastPlayer();
-        return new GameState(tickets, cardState, currentPlayerId().next(), playerState, lastPlayerId);
+        return withSamePlayers(tickets, cardState, currentPlayerId().next(), lastPlayerId);
 
 
     }
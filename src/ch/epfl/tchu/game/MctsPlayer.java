@@ -0,0 +1,585 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+/**
+ * A bot choosing its turns by information set Monte Carlo tree search. Before each decision, it plays as many games to
+ * their end as its time budget allows, each one from a determinization of the current state: the hand and the tickets
+ * of the other player, the order of the deck and the ticket deck are drawn at random among the ones matching what the
+ * bot knows. All the determinizations share one tree, whose nodes are the sequences of turns of both players played
+ * from the current state: each game goes down the tree by UCB1 among the moves possible in its determinization, a
+ * move being explored as often as it was available rather than as often as its parent was visited, adds the first
+ * move never tried to the tree, and is played to its end on a SimulationState by a fast rollout policy. A node is
+ * rewarded from the point of view of the player of its move, and the move of the bot played the most often is chosen.
+ * The games are played in parallel on the calling thread and on threads of the bot, so that a search never waits for
+ * the tasks of someone else and always ends at its deadline; each thread grows its own tree, and the statistics of
+ * their roots are summed.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class MctsPlayer implements Player {
+
+    //the weight of the exploration in UCB1, the rewards being between 0 and 1
+    private static final double EXPLORATION = 0.7;
+    //the turns after which a rollout is stopped even if the game isn't over, when nobody can do anything anymore
+    private static final int MAX_ROLLOUT_TURNS = 500;
+    private static final StationConnectivity NOTHING_CONNECTED = (s1, s2) -> s1.equals(s2);
+    //the moves of both players, indexed by their id: the claims of each route of ChMap with each of its possible claim
+    //cards, then the draws of a face up card of each color or of the deck, as first then as second card, then the
+    //draw of tickets
+    private static final int[] FIRST_CLAIM_IDS = new int[ChMap.routes().size() + 1];
+    private static final List<Move> MOVES = allMoves();
+    private static final int FIRST_DRAW_ID = FIRST_CLAIM_IDS[ChMap.routes().size()];
+    private static final int FIRST_SECOND_DRAW_ID = FIRST_DRAW_ID + Card.COUNT + 1;
+    private static final Move DRAW_TICKETS = MOVES.get(MOVES.size() - 1);
+
+    private final Random rng;
+    private final long moveNanos;
+    private final int parallelism;
+    //the threads of the search besides the calling one, stopped when they have been idle for a while
+    private final ThreadPoolExecutor searchers;
+
+    private PlayerId ownId;
+    private PublicGameState state;
+    private PlayerState ownState;
+    private SortedBag<Ticket> initialTickets;
+    private Move chosenMove;
+    private boolean firstDraw;
+
+    /**
+     * @param seed        the seed of the random choices of the bot
+     * @param moveMillis  the time the bot thinks before each decision, in milliseconds; with 0, it plays the first
+     *                    possible move
+     * @param parallelism the number of games played at the same time during a search, and so of threads
+     * @throws IllegalArgumentException if moveMillis is negative or if parallelism isn't positive
+     */
+    public MctsPlayer(long seed, long moveMillis, int parallelism) {
+        Preconditions.checkArgument(moveMillis >= 0 && parallelism > 0);
+        this.rng = new Random(seed);
+        this.moveNanos = moveMillis * 1_000_000;
+        this.parallelism = parallelism;
+        this.searchers = new ThreadPoolExecutor(Math.max(parallelism - 1, 1), Math.max(parallelism - 1, 1),
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "mcts search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        searchers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param moveMillis the time the bot thinks before each decision, in milliseconds, using all the processors
+     * @throws IllegalArgumentException if moveMillis is negative
+     */
+    public MctsPlayer(long moveMillis) {
+        this(new Random().nextLong(), moveMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void initPlayers(PlayerId ownId, Map<PlayerId, String> playerNames) {
+        this.ownId = ownId;
+    }
+
+    @Override
+    public void receiveInfo(String info) {
+    }
+
+    @Override
+    public void updateState(PublicGameState newState, PlayerState ownState) {
+        this.state = newState;
+        this.ownState = ownState;
+    }
+
+    @Override
+    public void setInitialTicketChoice(SortedBag<Ticket> tickets) {
+        initialTickets = tickets;
+    }
+
+    @Override
+    public SortedBag<Ticket> chooseInitialTickets() {
+        return cheapestTickets(initialTickets, Constants.INITIAL_TICKETS_COUNT - Constants.DISCARDABLE_TICKETS_COUNT);
+    }
+
+    @Override
+    public TurnKind nextTurn() {
+        List<Move> moves = new ArrayList<>();
+        PublicCardState cardState = state.cardState();
+        for (Route route : ChMap.routes()) {
+            if (state.isRouteOrTwinClaimed(route) || !ownState.canClaimRoute(route)) continue;
+            //the cards with the fewest locomotives, the other ones are kept for the tunnels
+            List<SortedBag<Card>> options = ownState.possibleClaimCards(route);
+            int fewestLocomotives = Integer.MAX_VALUE;
+            for (SortedBag<Card> cards : options) fewestLocomotives = Math.min(fewestLocomotives, cards.countOf(Card.LOCOMOTIVE));
+            for (SortedBag<Card> cards : options) {
+                if (cards.countOf(Card.LOCOMOTIVE) == fewestLocomotives) moves.add(Move.claiming(route, cards));
+            }
+        }
+        if (state.canDrawCards()) moves.addAll(drawMoves(cardState, TurnKind.DRAW_CARDS));
+        if (state.ticketsCount() >= Constants.IN_GAME_TICKETS_COUNT) moves.add(DRAW_TICKETS);
+
+        //nothing can be done, the turn is lost
+        chosenMove = moves.isEmpty() ? Move.drawing(TurnKind.DRAW_CARDS, null) : search(moves);
+        firstDraw = true;
+        return chosenMove.kind;
+    }
+
+    @Override
+    public SortedBag<Ticket> chooseTickets(SortedBag<Ticket> options) {
+        return cheapestTickets(options, 1);
+    }
+
+    @Override
+    public int drawSlot() {
+        if (firstDraw) {
+            firstDraw = false;
+            return chosenMove.slot(state.cardState()::faceUpCard);
+        }
+        //the second card is chosen by another search, knowing the first one
+        return search(drawMoves(state.cardState(), null)).slot(state.cardState()::faceUpCard);
+    }
+
+    @Override
+    public Route claimedRoute() {
+        return chosenMove.route;
+    }
+
+    @Override
+    public SortedBag<Card> initialClaimCards() {
+        return chosenMove.cards;
+    }
+
+    @Override
+    public SortedBag<Card> chooseAdditionalCards(List<SortedBag<Card>> options) {
+        return additionalCards(options);
+    }
+
+    //the cards drawn from the deck or from a slot, each face up card being drawn from a single slot
+    private static List<Move> drawMoves(PublicCardState cardState, TurnKind kind) {
+        List<Move> moves = new ArrayList<>();
+        moves.add(Move.drawing(kind, null));
+        EnumSet<Card> faceUpCards = EnumSet.noneOf(Card.class);
+        for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+            if (faceUpCards.add(cardState.faceUpCard(slot))) moves.add(Move.drawing(kind, cardState.faceUpCard(slot)));
+        }
+        return moves;
+    }
+
+    //every move, in the order of their ids, filling FIRST_CLAIM_IDS
+    private static List<Move> allMoves() {
+        List<Move> moves = new ArrayList<>();
+        List<Route> routes = ChMap.routes();
+        for (int i = 0; i < routes.size(); i++) {
+            FIRST_CLAIM_IDS[i] = moves.size();
+            for (SortedBag<Card> cards : routes.get(i).possibleClaimCards())
+                moves.add(new Move(moves.size(), TurnKind.CLAIM_ROUTE, null, routes.get(i), cards));
+        }
+        FIRST_CLAIM_IDS[routes.size()] = moves.size();
+        for (TurnKind kind : Arrays.asList(TurnKind.DRAW_CARDS, null)) {
+            for (Card card : Card.ALL) moves.add(new Move(moves.size(), kind, card, null, null));
+            moves.add(new Move(moves.size(), kind, null, null, null));
+        }
+        moves.add(new Move(moves.size(), TurnKind.DRAW_TICKETS, null, null, null));
+        return Collections.unmodifiableList(moves);
+    }
+
+    //the moves the current player of the simulation can play, in the order of their ids, as nextTurn gives them
+    private static void possibleMoves(SimulationState simulation, List<Move> moves) {
+        moves.clear();
+        for (Route route : ChMap.routes()) {
+            if (simulation.isRouteOrTwinClaimed(route) || !simulation.canClaimRoute(route)) continue;
+            List<SortedBag<Card>> options = route.possibleClaimCards();
+            int fewestLocomotives = Integer.MAX_VALUE;
+            for (SortedBag<Card> cards : options) {
+                if (simulation.hasCards(cards)) fewestLocomotives = Math.min(fewestLocomotives, cards.countOf(Card.LOCOMOTIVE));
+            }
+            for (int i = 0; i < options.size(); i++) {
+                SortedBag<Card> cards = options.get(i);
+                if (cards.countOf(Card.LOCOMOTIVE) == fewestLocomotives && simulation.hasCards(cards))
+                    moves.add(MOVES.get(FIRST_CLAIM_IDS[route.index()] + i));
+            }
+        }
+        if (simulation.canDrawCards()) {
+            for (Card card : Card.ALL) {
+                for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+                    if (simulation.faceUpCard(slot) == card) {
+                        moves.add(Move.drawing(TurnKind.DRAW_CARDS, card));
+                        break;
+                    }
+                }
+            }
+            moves.add(Move.drawing(TurnKind.DRAW_CARDS, null));
+        }
+        if (simulation.ticketsCount() >= Constants.IN_GAME_TICKETS_COUNT) moves.add(DRAW_TICKETS);
+    }
+
+    //the given number of tickets which cost the least points if they aren't completed
+    private static SortedBag<Ticket> cheapestTickets(SortedBag<Ticket> options, int count) {
+        List<Ticket> tickets = new ArrayList<>(options.toList());
+        tickets.sort(Comparator.comparingInt(ticket -> -ticket.points(NOTHING_CONNECTED)));
+        return SortedBag.of(tickets.subList(0, count));
+    }
+
+    //the additional cards with the fewest locomotives, the options being sorted that way
+    private static SortedBag<Card> additionalCards(List<SortedBag<Card>> options) {
+        return options.get(0);
+    }
+
+    private Move search(List<Move> moves) {
+        if (moves.size() == 1) return moves.get(0);
+        long deadline = System.nanoTime() + moveNanos;
+        //the children of a node are sorted by id, so are the moves compared to them
+        moves.sort(Comparator.comparingInt(move -> move.id));
+
+        List<Future<double[][]>> tasks = new ArrayList<>();
+        for (int i = 1; i < parallelism; i++) {
+            long seed = rng.nextLong();
+            tasks.add(searchers.submit(() -> searchUntil(moves, deadline, new Random(seed))));
+        }
+        double[][] statistics = searchUntil(moves, deadline, new Random(rng.nextLong()));
+        for (Future<double[][]> task : tasks) {
+            double[][] taskStatistics = join(task);
+            for (int i = 0; i < moves.size(); i++) {
+                statistics[0][i] += taskStatistics[0][i];
+                statistics[1][i] += taskStatistics[1][i];
+            }
+        }
+
+        int best = 0;
+        for (int i = 1; i < moves.size(); i++) {
+            if (statistics[0][i] > statistics[0][best]
+                    || statistics[0][i] == statistics[0][best] && statistics[1][i] > statistics[1][best])
+                best = i;
+        }
+        return moves.get(best);
+    }
+
+    //the result of a task which ends at the deadline of the search
+    private static double[][] join(Future<double[][]> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //grows a tree from the given moves of the bot until the deadline, playing no game if it has already passed, e.g.
+    //when the task started late; returns the number of visits and the total reward of each of these moves
+    private double[][] searchUntil(List<Move> rootMoves, long deadline, Random random) {
+        Node root = new Node(null, ownId);
+        List<Node> path = new ArrayList<>();
+        List<Move> moves = new ArrayList<>();
+        SimulationState simulation = null;
+        while (System.nanoTime() < deadline) {
+            GameState determinization = determinization(random);
+            if (simulation == null) simulation = SimulationState.of(determinization);
+            else simulation.set(determinization);
+
+            //down the tree until a move is added to it, or the game ends
+            path.clear();
+            Node node = root;
+            boolean gameOver = false;
+            while (!gameOver) {
+                if (node == root) {
+                    moves.clear();
+                    moves.addAll(rootMoves);
+                } else {
+                    possibleMoves(simulation, moves);
+                }
+                //a turn lost, left to the rollout
+                if (moves.isEmpty()) break;
+                Node child = node.select(moves, simulation.currentPlayerId(), random);
+                path.add(child);
+                child.move.playOn(simulation, random);
+                gameOver = endTurn(simulation);
+                if (child.visits == 0) break;
+                node = child;
+            }
+            for (int turn = path.size(); turn < MAX_ROLLOUT_TURNS && !gameOver; turn++) {
+                rolloutTurn(simulation, random);
+                gameOver = endTurn(simulation);
+            }
+
+            double reward = reward(simulation);
+            for (Node visited : path) visited.update(visited.player == ownId ? reward : 1 - reward);
+        }
+
+        double[][] statistics = new double[2][rootMoves.size()];
+        for (Node child : root.children) {
+            int i = rootMoves.indexOf(child.move);
+            statistics[0][i] = child.visits;
+            statistics[1][i] = child.rewards;
+        }
+        return statistics;
+    }
+
+    //a state matching what the bot knows, where the hidden cards and tickets are dealt at random
+    private GameState determinization(Random random) {
+        PlayerId otherId = ownId.next();
+        PublicPlayerState other = state.playerState(otherId);
+        PublicCardState cardState = state.cardState();
+
+        int[] unknownCounts = new int[Card.COUNT];
+        for (Card card : Card.ALL)
+            unknownCounts[card.ordinal()] = Constants.ALL_CARDS.countOf(card) - ownState.cards().countOf(card);
+        for (Card card : cardState.faceUpCards()) unknownCounts[card.ordinal()]--;
+        List<Card> unknownCards = new ArrayList<>(Constants.TOTAL_CARDS_COUNT);
+        for (Card card : Card.ALL) {
+            for (int i = 0; i < unknownCounts[card.ordinal()]; i++) unknownCards.add(card);
+        }
+        int handEnd = other.cardCount();
+        int deckEnd = handEnd + cardState.deckSize();
+        int discardsEnd = deckEnd + cardState.discardsSize();
+        Collections.shuffle(unknownCards, random);
+
+        List<Ticket> unknownTickets = new ArrayList<>(ChMap.tickets());
+        for (Ticket ticket : ownState.tickets()) unknownTickets.remove(ticket);
+        Collections.shuffle(unknownTickets, random);
+        int ticketsEnd = Math.min(other.ticketCount(), unknownTickets.size());
+        int ticketDeckEnd = Math.min(ticketsEnd + state.ticketsCount(), unknownTickets.size());
+
+        Map<PlayerId, PlayerState> playerState = new EnumMap<>(PlayerId.class);
+        playerState.put(ownId, ownState);
+        playerState.put(otherId, PlayerState.of(other, SortedBag.of(unknownTickets.subList(0, ticketsEnd)),
+                SortedBag.of(unknownCards.subList(0, handEnd))));
+        CardState hiddenCardState = CardState.of(cardState.faceUpCards(),
+                Deck.of(SortedBag.of(unknownCards.subList(handEnd, deckEnd)), random),
+                SortedBag.of(unknownCards.subList(deckEnd, discardsEnd)));
+        return GameState.of(Deck.of(SortedBag.of(unknownTickets.subList(ticketsEnd, ticketDeckEnd)), random),
+                hiddenCardState, state.currentPlayerId(), playerState, state.lastPlayer());
+    }
+
+    //ends the turn of the current player, unless it was the last one of the game, as in GameRules.endsGame
+    //returns true iff the game is over
+    private static boolean endTurn(SimulationState simulation) {
+        if (simulation.lastPlayer() == simulation.currentPlayerId()) return true;
+        simulation.nextTurn();
+        return false;
+    }
+
+    //1 if the bot wins the game, 1/2 for a draw, 0 otherwise
+    private double reward(SimulationState simulation) {
+        int ownPoints = simulation.finalPoints(ownId);
+        int otherPoints = simulation.finalPoints(ownId.next());
+        int ownTrail = simulation.longestTrailLength(ownId);
+        int otherTrail = simulation.longestTrailLength(ownId.next());
+        if (ownTrail >= otherTrail) ownPoints += Constants.LONGEST_TRAIL_BONUS_POINTS;
+        if (otherTrail >= ownTrail) otherPoints += Constants.LONGEST_TRAIL_BONUS_POINTS;
+        return ownPoints > otherPoints ? 1 : ownPoints == otherPoints ? 0.5 : 0;
+    }
+
+    //the rollout policy: claims one of the longest routes it can, otherwise draws two cards, otherwise draws tickets
+    private static void rolloutTurn(SimulationState simulation, Random random) {
+        Route route = null;
+        int longest = 0;
+        int ties = 0;
+        for (Route candidate : ChMap.routes()) {
+            if (candidate.length() < longest || simulation.isRouteOrTwinClaimed(candidate) || !simulation.canClaimRoute(candidate))
+                continue;
+            if (candidate.length() > longest) {
+                longest = candidate.length();
+                ties = 0;
+            }
+            if (random.nextInt(++ties) == 0) route = candidate;
+        }
+
+        if (route != null) {
+            for (SortedBag<Card> cards : route.possibleClaimCards()) {
+                if (simulation.hasCards(cards)) {
+                    claim(simulation, route, cards, random);
+                    return;
+                }
+            }
+        }
+        if (simulation.canDrawCards()) {
+            for (int i = 0; i < 2; i++) {
+                simulation.recreateDeckIfNeeded(random);
+                draw(simulation, random.nextInt(Constants.FACE_UP_CARDS_COUNT + 1) - 1);
+            }
+        } else if (simulation.ticketsCount() >= Constants.IN_GAME_TICKETS_COUNT) {
+            drawTickets(simulation);
+        }
+    }
+
+    //keeps the cheapest of the tickets drawn, as chooseTickets
+    private static void drawTickets(SimulationState simulation) {
+        int kept = 0;
+        for (int i = 1; i < Constants.IN_GAME_TICKETS_COUNT; i++) {
+            if (simulation.topTicket(i).points(NOTHING_CONNECTED) > simulation.topTicket(kept).points(NOTHING_CONNECTED)) kept = i;
+        }
+        simulation.drawTickets(Constants.IN_GAME_TICKETS_COUNT, 1 << kept);
+    }
+
+    private static void draw(SimulationState simulation, int slot) {
+        if (slot == Constants.DECK_SLOT) simulation.drawBlindCard();
+        else simulation.drawFaceUpCard(slot);
+    }
+
+    //the claim of a route exactly as played by Game, the additional cards of a tunnel being chosen as the bot does
+    private static void claim(SimulationState simulation, Route route, SortedBag<Card> initialCards, Random random) {
+        simulation.recreateDeckIfNeeded(random);
+        if (route.level() == Route.Level.OVERGROUND) {
+            simulation.claimRoute(route, initialCards);
+        } else {
+            int additionalCount = 0;
+            SortedBag.Builder<Card> drawnCards = new SortedBag.Builder<>();
+            for (int i = 0; i < Constants.ADDITIONAL_TUNNEL_CARDS; i++) {
+                simulation.recreateDeckIfNeeded(random);
+                //where Game would fail, when nearly every card is in the hands of the players: the tunnel isn't claimed
+                if (simulation.deckSize() == 0) break;
+                Card drawnCard = simulation.topCard();
+                if (drawnCard == Card.LOCOMOTIVE || initialCards.contains(drawnCard)) additionalCount++;
+                simulation.removeTopCard();
+                drawnCards.add(drawnCard);
+            }
+            simulation.discard(drawnCards.build());
+            if (drawnCards.size() < Constants.ADDITIONAL_TUNNEL_CARDS) return;
+            if (additionalCount == 0) {
+                simulation.claimRoute(route, initialCards);
+            } else {
+                SortedBag<Card> additionalCards = additionalCards(simulation, additionalCount, initialCards);
+                if (additionalCards != null) simulation.claimRoute(route, initialCards.union(additionalCards));
+            }
+        }
+    }
+
+    //the first option of PlayerState.possibleAdditionalCards, with the fewest locomotives, null if there is none
+    private static SortedBag<Card> additionalCards(SimulationState simulation, int count, SortedBag<Card> initialCards) {
+        PlayerId playerId = simulation.currentPlayerId();
+        Card color = null;
+        for (Card card : initialCards.toSet()) {
+            if (card != Card.LOCOMOTIVE) color = card;
+        }
+        int colorCards = color == null ? 0 : simulation.cardCount(playerId, color) - initialCards.countOf(color);
+        int locomotives = simulation.cardCount(playerId, Card.LOCOMOTIVE) - initialCards.countOf(Card.LOCOMOTIVE);
+        if (colorCards + locomotives < count) return null;
+        int usedColorCards = Math.min(count, colorCards);
+        return usedColorCards == 0
+                ? SortedBag.of(count, Card.LOCOMOTIVE)
+                : SortedBag.of(usedColorCards, color, count - usedColorCards, Card.LOCOMOTIVE);
+    }
+
+    //a move of a player: the kind of its turn and what it claims or draws first, or the second card it draws
+    private static final class Move {
+        //the index of the move in MOVES
+        private final int id;
+        //the kind of the turn, null for the second card drawn
+        private final TurnKind kind;
+        //the face up card drawn, null for the deck
+        private final Card card;
+        private final Route route;
+        private final SortedBag<Card> cards;
+
+        private Move(int id, TurnKind kind, Card card, Route route, SortedBag<Card> cards) {
+            this.id = id;
+            this.kind = kind;
+            this.card = card;
+            this.route = route;
+            this.cards = cards;
+        }
+
+        private static Move claiming(Route route, SortedBag<Card> cards) {
+            int option = route.possibleClaimCards().indexOf(cards);
+            Preconditions.checkArgument(route.index() >= 0 && option >= 0);
+            return MOVES.get(FIRST_CLAIM_IDS[route.index()] + option);
+        }
+
+        //the draw of the given face up card, or of the deck if it is null
+        private static Move drawing(TurnKind kind, Card card) {
+            return MOVES.get((kind == null ? FIRST_SECOND_DRAW_ID : FIRST_DRAW_ID) + (card == null ? Card.COUNT : card.ordinal()));
+        }
+
+        //the slot the card is drawn from, the first one showing it
+        private int slot(IntFunction<Card> faceUpCards) {
+            if (card == null) return Constants.DECK_SLOT;
+            for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+                if (faceUpCards.apply(slot) == card) return slot;
+            }
+            throw new IllegalStateException();
+        }
+
+        //plays the rest of the turn of the player, the second card being drawn by the rollout policy
+        private void playOn(SimulationState simulation, Random random) {
+            if (kind == null) {
+                draw(simulation, slot(simulation::faceUpCard));
+                return;
+            }
+            switch (kind) {
+                case DRAW_TICKETS:
+                    drawTickets(simulation);
+                    break;
+                case DRAW_CARDS:
+                    simulation.recreateDeckIfNeeded(random);
+                    draw(simulation, slot(simulation::faceUpCard));
+                    simulation.recreateDeckIfNeeded(random);
+                    draw(simulation, random.nextInt(Constants.FACE_UP_CARDS_COUNT + 1) - 1);
+                    break;
+                default:
+                    claim(simulation, route, cards, random);
+            }
+        }
+    }
+
+    //a node of the tree, reached by the move of the given player, and rewarded from his point of view
+    private static final class Node {
+        private final Move move;
+        private final PlayerId player;
+        //the children, sorted by the ids of their moves
+        private final List<Node> children = new ArrayList<>();
+        private double visits;
+        private double rewards;
+        //the number of times the move was possible when the parent was visited
+        private double availability;
+
+        private Node(Move move, PlayerId player) {
+            this.move = move;
+            this.player = player;
+        }
+
+        //the child of one of the given moves, sorted by id: a new one of a move never tried if there is one,
+        //otherwise the one with the best upper confidence bound; the availability of each of the moves is counted
+        private Node select(List<Move> moves, PlayerId player, Random random) {
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            Move untried = null;
+            int untriedCount = 0;
+            int c = 0;
+            for (Move move : moves) {
+                while (c < children.size() && children.get(c).move.id < move.id) c++;
+                if (c < children.size() && children.get(c).move == move) {
+                    Node child = children.get(c);
+                    child.availability++;
+                    double value = child.rewards / child.visits
+                            + EXPLORATION * Math.sqrt(Math.log(child.availability) / child.visits);
+                    if (value > bestValue) {
+                        bestValue = value;
+                        best = child;
+                    }
+                } else if (random.nextInt(++untriedCount) == 0) {
+                    untried = move;
+                }
+            }
+            if (untried == null) return best;
+
+            Node child = new Node(untried, player);
+            child.availability = 1;
+            int position = 0;
+            while (position < children.size() && children.get(position).move.id < untried.id) position++;
+            children.add(position, child);
+            return child;
+        }
+
+        private void update(double reward) {
+            visits++;
+            rewards += reward;
+        }
+    }
+}
@@ -14,6 +14,8 @@ public final class PlayerState extends PublicPlayerState {
 
     private final SortedBag<Ticket> tickets;
     private final SortedBag<Card> cards;
+    private final int[] cardCounts;
+    private final StationPartition partition;
 
     /**
      * The constructor of the state of the player
@@ -22,9 +24,46 @@ public final class PlayerState extends PublicPlayerState {
      * @param routes the list of his routes
      */
     public PlayerState(SortedBag<Ticket> tickets, SortedBag<Card> cards, List<Route> routes) {
-        super(tickets.size(), cards.size() , routes);
-        this.tickets = SortedBag.of(tickets);
-        this.cards = SortedBag.of(cards);
+        this(tickets, cards, null, new PublicPlayerState(0, 0, routes));
+    }
+
+    private PlayerState(SortedBag<Ticket> tickets, SortedBag<Card> cards, int[] cardCounts, PublicPlayerState routesOwner) {
+        this(tickets, cards, cardCounts, routesOwner, computePartition(routesOwner.routes()));
+    }
+
+    //shares the bags, which are immutable, and the routes of the given state, whose partition must be the given one;
+    //the counts of the cards, never modified once built, are computed if they are null
+    private PlayerState(SortedBag<Ticket> tickets, SortedBag<Card> cards, int[] cardCounts, PublicPlayerState routesOwner, StationPartition partition) {
+        super(tickets.size(), cards.size(), routesOwner);
+        this.tickets = Objects.requireNonNull(tickets);
+        this.cards = Objects.requireNonNull(cards);
+        this.cardCounts = cardCounts != null ? cardCounts : computeCardCounts(cards);
+        this.partition = partition;
+    }
+
+    private static int[] computeCardCounts(SortedBag<Card> cards) {
+        int[] cardCounts = new int[Card.COUNT];
+        for (Card card : Card.ALL) cardCounts[card.ordinal()] = cards.countOf(card);
+        return cardCounts;
+    }
+
+    private static StationPartition computePartition(List<Route> routes) {
+        int idMax = 0;
+        for(Route route : routes){
+            if(route.station1().id() > idMax) idMax = route.station1().id();
+            if(route.station2().id() > idMax) idMax = route.station2().id();
+        }
+        StationPartition.Builder s = new StationPartition.Builder(idMax + 1);
+        for(Route route : routes){
+            s.connect(route.station1(), route.station2());
+        }
+        return s.build();
+    }
+
+    //the state of a player having the routes of the given one and the given tickets and cards, e.g. a guess of the
+    //hidden parts of the state of another player
+    static PlayerState of(PublicPlayerState routesOwner, SortedBag<Ticket> tickets, SortedBag<Card> cards) {
+        return new PlayerState(tickets, cards, null, routesOwner);
     }
 
     /**
@@ -52,7 +91,7 @@ public final class PlayerState extends PublicPlayerState {
      * @return the new state of the player
      */
     public PlayerState withAddedTickets(SortedBag<Ticket> newTickets){
-        return new PlayerState(tickets.union(newTickets), cards, routes());
+        return new PlayerState(tickets.union(newTickets), cards, cardCounts, this, partition);
     }
 
     /**
@@ -69,7 +108,9 @@ public final class PlayerState extends PublicPlayerState {
      * @return the new state of the player
      */
     public PlayerState withAddedCard(Card card){
-        return new PlayerState(tickets, cards.union(SortedBag.of(card)), routes());
+        int[] newCardCounts = cardCounts.clone();
+        ++newCardCounts[card.ordinal()];
+        return new PlayerState(tickets, cards.union(SortedBag.of(card)), newCardCounts, this, partition);
     }
 
     /*
@@ -87,12 +128,7 @@ public final class PlayerState extends PublicPlayerState {
      * @return if the player can claim it
      */
     public boolean canClaimRoute(Route route){
-        if(carCount() >= route.length()){
-            for(SortedBag<Card> possibleCards : route.possibleClaimCards()){
-                if(cards.contains(possibleCards)) return true;
-            }
-        }
-        return false;
+        return carCount() >= route.length() && route.canBeClaimedWith(cardCounts);
     }
 
     /**
@@ -143,9 +179,9 @@ public final class PlayerState extends PublicPlayerState {
      * @return the player state of the player with the route and without the cards
      */
     public PlayerState withClaimedRoute(Route route, SortedBag<Card> claimCards){
-        List<Route> newRoutes = new ArrayList<>(routes());
-        newRoutes.add(route);
-        return new PlayerState(tickets, cards.difference(claimCards), newRoutes);
+        PublicPlayerState newRoutes = new PublicPlayerState(0, 0, routeBitsWith(route));
+        return new PlayerState(tickets, cards.difference(claimCards), null, newRoutes,
+                partition.withConnected(route.station1(), route.station2()));
     }
 
     /**
@@ -153,16 +189,6 @@ public final class PlayerState extends PublicPlayerState {
      * @return the points the player wins thanks to his tickets
      */
     public int ticketPoints(){
-        int idMax = 0;
-        for(Route route : routes()){
-            if(route.station1().id() > idMax) idMax = route.station1().id();
-            if(route.station2().id() > idMax) idMax = route.station2().id();
-        }
-        StationPartition.Builder s = new StationPartition.Builder(idMax + 1);
-        for(Route route : routes()){
-            s.connect(route.station1(), route.station2());
-        }
-        StationPartition partition = s.build();
         int points = 0;
         for(Ticket ticket : tickets){
             points += ticket.points(partition);
@@ -16,8 +16,10 @@ public class PublicGameState {
     private final int ticketsCount;
     private final PublicCardState cardState;
     private final PlayerId currentPlayerId;
-    private final Map<PlayerId, PublicPlayerState> playerState;
+    private final Map<PlayerId, ? extends PublicPlayerState> playerState;
     private final PlayerId lastPlayer;
+    //the claimed routes, one bit per index in ChMap.routes()
+    private final long[] claimedRouteBits;
 
     /**
      * The Constructor of a public game state
@@ -29,12 +31,33 @@ public class PublicGameState {
      * @throws IllegalArgumentException if ticketsCount is negative or if there isn't the right amount of playerstates
      */
     public PublicGameState(int ticketsCount, PublicCardState cardState, PlayerId currentPlayerId, Map<PlayerId,PublicPlayerState> playerState, PlayerId lastPlayer) {
-        Preconditions.checkArgument(ticketsCount>=0 && playerState.entrySet().size()==PlayerId.COUNT);
+        this(ticketsCount, cardState, currentPlayerId, Map.copyOf(Objects.requireNonNull(playerState)), lastPlayer, null);
+    }
+
+    //the map of the states of the players is kept as it is and must be immutable, the bits of the claimed routes
+    //are computed from it if they are null
+    PublicGameState(int ticketsCount, PublicCardState cardState, PlayerId currentPlayerId, Map<PlayerId, ? extends PublicPlayerState> playerState, PlayerId lastPlayer, long[] claimedRouteBits) {
+        Preconditions.checkArgument(ticketsCount>=0 && playerState.size()==PlayerId.COUNT);
         this.ticketsCount = ticketsCount;
         this.cardState = Objects.requireNonNull(cardState);
         this.currentPlayerId = Objects.requireNonNull(currentPlayerId);
-        this.playerState = Map.copyOf(Objects.requireNonNull(playerState));
+        this.playerState = playerState;
         this.lastPlayer = lastPlayer;
+        this.claimedRouteBits = claimedRouteBits != null ? claimedRouteBits : computeClaimedRouteBits(playerState);
+    }
+
+    private static long[] computeClaimedRouteBits(Map<PlayerId, ? extends PublicPlayerState> playerState) {
+        long[] claimedRouteBits = new long[(ChMap.routes().size() + Long.SIZE - 1) / Long.SIZE];
+        for (PublicPlayerState state : playerState.values()) {
+            long[] routeBits = state.routeBits();
+            for (int i = 0; i < routeBits.length; i++) claimedRouteBits[i] |= routeBits[i];
+        }
+        return claimedRouteBits;
+    }
+
+    //the bits of the claimed routes, which mustn't be modified
+    long[] claimedRouteBits() {
+        return claimedRouteBits;
     }
 
     /**
@@ -96,18 +119,56 @@ public class PublicGameState {
 
     /**
      *
-     * @return A list of all the routes that have already been claimed
+     * @return A list of all the routes that have already been claimed, in the order of ChMap.routes()
      */
     public List<Route> claimedRoutes() {
-        List<Route> claimedRoutes = new ArrayList<>();
-        for (Map.Entry<PlayerId, PublicPlayerState> routes  : playerState.entrySet()) {
-            for (Route route: routes.getValue().routes()) {
-                claimedRoutes.add(route);
+        List<Route> claimedRoutes = new ArrayList<>(claimedRouteCount());
+        for (int word = 0; word < claimedRouteBits.length; word++) {
+            for (long bits = claimedRouteBits[word]; bits != 0; bits &= bits - 1) {
+                claimedRoutes.add(ChMap.routes().get(word * Long.SIZE + Long.numberOfTrailingZeros(bits)));
             }
         }
         return claimedRoutes;
     }
 
+    /**
+     *
+     * @return the number of routes that have already been claimed
+     */
+    public int claimedRouteCount() {
+        int count = 0;
+        for (long bits : claimedRouteBits) count += Long.bitCount(bits);
+        return count;
+    }
+
+    /**
+     *
+     * @param route a route
+     * @return if the route has already been claimed
+     */
+    public boolean isClaimed(Route route) {
+        int index = ChMap.routeIndex(route);
+        return index >= 0 && isClaimed(index);
+    }
+
+    /**
+     * Tells, in constant time, if the given route can't be claimed anymore because it or the other route between
+     * the same stations has been claimed
+     * @param route a route of ChMap
+     * @return true iff the route or its twin has been claimed
+     * @throws IllegalArgumentException if the route isn't one of ChMap
+     */
+    public boolean isRouteOrTwinClaimed(Route route) {
+        int index = ChMap.routeIndex(route);
+        Preconditions.checkArgument(index >= 0);
+        int twinIndex = ChMap.twinRouteIndex(index);
+        return isClaimed(index) || (twinIndex >= 0 && isClaimed(twinIndex));
+    }
+
+    private boolean isClaimed(int routeIndex) {
+        return (claimedRouteBits[routeIndex / Long.SIZE] & 1L << routeIndex) != 0;
+    }
+
     /**
      *
      * @return the last player to play the game
@@ -2,6 +2,7 @@ package ch.epfl.tchu.game;
 
 import ch.epfl.tchu.Preconditions;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -12,8 +13,12 @@ import java.util.List;
  */
 public class PublicPlayerState {
 
+    private static final int ROUTE_WORDS = (ChMap.routes().size() + Long.SIZE - 1) / Long.SIZE;
+
     private final int ticketCount, cardCount;
-    private final List<Route> routes;
+    //the routes of the player, one bit per index in ChMap.routes(), never modified once built
+    private final long[] routeBits;
+    private List<Route> routes;
     int carCount;
     int claimPoints;
 
@@ -24,32 +29,67 @@ public class PublicPlayerState {
      * @param ticketCount the number of tickets the player has
      * @param cardCount the number of cards the player has
      * @param routes the routes he has captured
-     * @throws IllegalArgumentException if the ticketCount or the cardCount is negative
+     * @throws IllegalArgumentException if the ticketCount or the cardCount is negative, or if a route isn't one of
+     * ChMap
      */
     public PublicPlayerState(int ticketCount, int cardCount, List<Route> routes) {
+        this(ticketCount, cardCount, routeBits(routes));
+    }
+
+    //the bits are the ones of the routes of the player, and are kept as they are
+    PublicPlayerState(int ticketCount, int cardCount, long[] routeBits) {
         Preconditions.checkArgument(ticketCount >= 0);
         Preconditions.checkArgument(cardCount >= 0);
         this.ticketCount = ticketCount;
         this.cardCount = cardCount;
-        this.routes = List.copyOf(routes);
-        this.carCount = Constants.INITIAL_CAR_COUNT - totalForCarCount();
-        this.claimPoints = totalForClaimPoints();
+        this.routeBits = routeBits;
+        int length = 0;
+        int points = 0;
+        for (int word = 0; word < routeBits.length; word++) {
+            for (long bits = routeBits[word]; bits != 0; bits &= bits - 1) {
+                Route route = ChMap.routes().get(word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                length += route.length();
+                points += route.claimPoints();
+            }
+        }
+        this.carCount = Constants.INITIAL_CAR_COUNT - length;
+        this.claimPoints = points;
     }
 
-    private int totalForCarCount() {
-        int total = 0;
-        for(Route route : routes){
-            total += route.length();
-        }
-        return total;
+    //shares the routes of the given state, and what is computed from them
+    PublicPlayerState(int ticketCount, int cardCount, PublicPlayerState routesOwner) {
+        Preconditions.checkArgument(ticketCount >= 0);
+        Preconditions.checkArgument(cardCount >= 0);
+        this.ticketCount = ticketCount;
+        this.cardCount = cardCount;
+        this.routeBits = routesOwner.routeBits;
+        this.routes = routesOwner.routes;
+        this.carCount = routesOwner.carCount;
+        this.claimPoints = routesOwner.claimPoints;
     }
 
-    private int totalForClaimPoints() {
-        int constructionPoints = 0;
-        for(Route route : routes){
-            constructionPoints += route.claimPoints();
-        }
-        return constructionPoints;
+    private static long[] routeBits(List<Route> routes) {
+        long[] bits = new long[ROUTE_WORDS];
+        for (Route route : routes) addRoute(bits, route);
+        return bits;
+    }
+
+    private static void addRoute(long[] bits, Route route) {
+        int index = ChMap.routeIndex(route);
+        Preconditions.checkArgument(index >= 0);
+        bits[index / Long.SIZE] |= 1L << index;
+    }
+
+    //the routes of the player with the given one, as bits
+    long[] routeBitsWith(Route route) {
+        long[] bits = routeBits.clone();
+        addRoute(bits, route);
+        return bits;
+    }
+
+    //the bits of the routes of the player, which mustn't be modified
+    long[] routeBits() {
+        return routeBits;
     }
 
 
@@ -71,12 +111,42 @@ public class PublicPlayerState {
 
     /**
      *
-     * @return the routes he has
+     * @return the routes he has, in the order of ChMap.routes()
      */
     public List<Route> routes(){
+        List<Route> routes = this.routes;
+        if (routes == null) {
+            List<Route> list = new ArrayList<>(routeCount());
+            for (int word = 0; word < routeBits.length; word++) {
+                for (long bits = routeBits[word]; bits != 0; bits &= bits - 1) {
+                    list.add(ChMap.routes().get(word * Long.SIZE + Long.numberOfTrailingZeros(bits)));
+                }
+            }
+            this.routes = routes = List.copyOf(list);
+        }
         return routes;
     }
 
+    /**
+     *
+     * @param route a route
+     * @return if he has the route
+     */
+    public boolean hasRoute(Route route){
+        int index = ChMap.routeIndex(route);
+        return index >= 0 && (routeBits[index / Long.SIZE] & 1L << index) != 0;
+    }
+
+    /**
+     *
+     * @return the number of routes he has
+     */
+    public int routeCount(){
+        int count = 0;
+        for (long bits : routeBits) count += Long.bitCount(bits);
+        return count;
+    }
+
     /**
      *
      * @return the number of cars he has thanks to his routes
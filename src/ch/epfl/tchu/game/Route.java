@@ -22,6 +22,10 @@ public final class Route {
     private final int length;
     private final Level level;
     private final Color color;
+    private final List<Station> stations;
+    private final List<SortedBag<Card>> possibleClaimCards;
+    //the index of the route in ChMap.routes(), -1 for the other routes
+    private int index = -1;
 
 
     /**
@@ -43,6 +47,24 @@ public final class Route {
         this.length = length;
         this.level = Objects.requireNonNull(level);
         this.color = color;
+        this.stations = List.of(station1, station2);
+        this.possibleClaimCards = computePossibleClaimCards();
+    }
+
+    /**
+     * Gives to each of the given routes its index in the list. Called once, with the routes of ChMap.
+     *
+     * @param routes the routes
+     */
+    static void assignIndices(List<Route> routes) {
+        for (int i = routes.size() - 1; i >= 0; i--) {
+            routes.get(i).index = i;
+        }
+    }
+
+    //the index of the route in ChMap.routes(), -1 if it isn't one of them
+    int index() {
+        return index;
     }
 
     /**
@@ -91,7 +113,7 @@ public final class Route {
      * @return the two stations connected by the road
      */
     public List<Station> stations() {
-        return List.of(station1, station2);
+        return stations;
     }
 
     /**
@@ -105,9 +127,32 @@ public final class Route {
     }
 
     /**
-     * @return all possible sets of cards that we can use to take a road
+     * @return all possible sets of cards that we can use to take a road (computed once, immutable)
      */
     public List<SortedBag<Card>> possibleClaimCards() {
+        return possibleClaimCards;
+    }
+
+    /**
+     * Checks if a hand contains one of the possible sets of cards of the road, without building any bag
+     *
+     * @param cardCounts the number of cards of the hand, indexed by the ordinal of the card
+     * @return true iff one of the possibleClaimCards is contained in the hand
+     * @throws IllegalArgumentException if there isn't a count for each card
+     */
+    public boolean canBeClaimedWith(int[] cardCounts) {
+        Preconditions.checkArgument(cardCounts.length == Card.COUNT);
+        int locomotives = level == Level.UNDERGROUND ? cardCounts[Card.LOCOMOTIVE.ordinal()] : 0;
+        if (locomotives >= length) return true;
+        for (Card card : Card.CARS) {
+            int cars = cardCounts[card.ordinal()];
+            //an underground road needs at least one car card, completed by locomotives
+            if ((color == null || card.color() == color) && cars >= 1 && cars + locomotives >= length) return true;
+        }
+        return false;
+    }
+
+    private List<SortedBag<Card>> computePossibleClaimCards() {
         List<SortedBag<Card>> cards = new ArrayList<>();
         if (level == Level.OVERGROUND) {
             for (Card card : Card.CARS) {
@@ -122,7 +167,7 @@ public final class Route {
             }
             cards.add(SortedBag.of(length, Card.LOCOMOTIVE));
         }
-        return cards;
+        return List.copyOf(cards);
     }
 
     /**
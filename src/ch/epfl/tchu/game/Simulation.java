@@ -0,0 +1,158 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Plays many headless games (see Game.simulate) in parallel, for example to compare the strategies of bots
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class Simulation {
+
+    private Simulation() {
+    }
+
+    /**
+     * plays gameCount games on a fork-join pool, each one with new players and its own random generator
+     *
+     * @param gameCount   the number of games to play
+     * @param seed        the seed from which the seed of each game is drawn, so that the same simulation can be played again
+     * @param parallelism the number of games played at the same time
+     * @param players     creates the players of a game
+     * @return the statistics of the games
+     * @throws IllegalArgumentException if gameCount is negative or if parallelism isn't positive
+     */
+    public static Result run(int gameCount, long seed, int parallelism, Supplier<Map<PlayerId, Player>> players) {
+        Preconditions.checkArgument(gameCount >= 0 && parallelism > 0);
+        SortedBag<Ticket> tickets = SortedBag.of(ChMap.tickets());
+        long[] seeds = new Random(seed).longs(gameCount).toArray();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            Statistics statistics = pool.submit(() -> LongStream.of(seeds)
+                    .parallel()
+                    .mapToObj(gameSeed -> Game.simulate(players.get(), tickets, new Random(gameSeed)))
+                    .collect(Statistics::new, Statistics::add, Statistics::addAll))
+                    .get();
+            return new Result(statistics, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //the points and the wins of each player, accumulated game after game
+    private static final class Statistics {
+        private final Map<PlayerId, IntSummaryStatistics> points = new EnumMap<>(PlayerId.class);
+        private final Map<PlayerId, Integer> wins = new EnumMap<>(PlayerId.class);
+        private int draws;
+
+        private Statistics() {
+            for (PlayerId playerId : PlayerId.ALL) {
+                points.put(playerId, new IntSummaryStatistics());
+                wins.put(playerId, 0);
+            }
+        }
+
+        private void add(Map<PlayerId, Integer> finalPoints) {
+            PlayerId.ALL.forEach(playerId -> points.get(playerId).accept(finalPoints.get(playerId)));
+            int points1 = finalPoints.get(PlayerId.PLAYER_1);
+            int points2 = finalPoints.get(PlayerId.PLAYER_2);
+            if (points1 == points2) ++draws;
+            else wins.merge(points1 > points2 ? PlayerId.PLAYER_1 : PlayerId.PLAYER_2, 1, Integer::sum);
+        }
+
+        private void addAll(Statistics that) {
+            PlayerId.ALL.forEach(playerId -> {
+                points.get(playerId).combine(that.points.get(playerId));
+                wins.merge(playerId, that.wins.get(playerId), Integer::sum);
+            });
+            draws += that.draws;
+        }
+    }
+
+    /**
+     * The statistics of a simulation
+     */
+    public static final class Result {
+        private final Statistics statistics;
+        private final long elapsedNanos;
+
+        private Result(Statistics statistics, long elapsedNanos) {
+            this.statistics = statistics;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the number of games played
+         */
+        public int gameCount() {
+            return (int) statistics.points.get(PlayerId.PLAYER_1).getCount();
+        }
+
+        /**
+         * @return the time taken by the whole simulation, in nanoseconds
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the number of games played per second
+         */
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : gameCount() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param playerId
+         * @return the count, min, max, sum and average of the final points of the given player
+         */
+        public IntSummaryStatistics points(PlayerId playerId) {
+            IntSummaryStatistics points = new IntSummaryStatistics();
+            points.combine(statistics.points.get(playerId));
+            return points;
+        }
+
+        /**
+         * @param playerId
+         * @return the number of games won by the given player
+         */
+        public int wins(PlayerId playerId) {
+            return statistics.wins.get(playerId);
+        }
+
+        /**
+         * @return the number of games ending in a draw
+         */
+        public int draws() {
+            return statistics.draws;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner("\n");
+            joiner.add(String.format("%d games in %.3f s (%.1f games/s), %d draws",
+                    gameCount(), elapsedNanos / 1e9, gamesPerSecond(), draws()));
+            for (PlayerId playerId : PlayerId.ALL) {
+                IntSummaryStatistics points = statistics.points.get(playerId);
+                joiner.add(String.format("%s : %d wins, points min %d / avg %.2f / max %d",
+                        playerId, wins(playerId), points.getMin(), points.getAverage(), points.getMax()));
+            }
+            return joiner.toString();
+        }
+    }
+}
@@ -0,0 +1,630 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.util.*;
+
+/**
+ * A mutable state of the game for the bots playing many games in their head, e.g. the rollouts of MctsPlayer. It has
+ * the same transitions as GameState, but they modify the state in place without allocating anything: the cards are
+ * counted in arrays indexed by their ordinal, the deck is an array of ordinals read from a cursor and the routes are
+ * bitsets over ChMap.routes(). Every transition is recorded in a journal, so that undo can bring the state back to
+ * any mark taken before, e.g. after having tried a turn. Only the routes of ChMap can be claimed.
+ * A state isn't thread-safe, each thread of a bot must have its own.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class SimulationState {
+
+    private static final List<Route> ROUTES = ChMap.routes();
+    private static final int ROUTE_WORDS = (ROUTES.size() + Long.SIZE - 1) / Long.SIZE;
+    private static final int STATION_COUNT = ChMap.stations().stream().mapToInt(Station::id).max().orElse(-1) + 1;
+    private static final int NO_PLAYER = -1;
+
+    //the stations and the lengths of the routes, and the bitset of the routes touching each station
+    private static final int[] STATIONS1 = new int[ROUTES.size()];
+    private static final int[] STATIONS2 = new int[ROUTES.size()];
+    private static final int[] LENGTHS = new int[ROUTES.size()];
+    private static final long[][] STATION_ROUTES = new long[STATION_COUNT][ROUTE_WORDS];
+
+    static {
+        for (int i = 0; i < ROUTES.size(); i++) {
+            STATIONS1[i] = ROUTES.get(i).station1().id();
+            STATIONS2[i] = ROUTES.get(i).station2().id();
+            LENGTHS[i] = ROUTES.get(i).length();
+            STATION_ROUTES[STATIONS1[i]][i / Long.SIZE] |= 1L << i;
+            STATION_ROUTES[STATIONS2[i]][i / Long.SIZE] |= 1L << i;
+        }
+    }
+
+    //the kinds of the entries of the journal, each one pushed after its arguments
+    private static final int FACE_UP_CARD = 0;
+    private static final int DECK_TOP = 1;
+    private static final int DECK_END = 2;
+    private static final int HAND_CARD = 3;
+    private static final int DISCARD = 4;
+    private static final int ROUTE = 5;
+    private static final int TICKETS = 6;
+    private static final int TURN = 7;
+
+    private int currentPlayer;
+    private int lastPlayer = NO_PLAYER;
+
+    private final int[][] hands = new int[PlayerId.COUNT][Card.COUNT];
+    private final int[] handSizes = new int[PlayerId.COUNT];
+    private final long[][] routeBits = new long[PlayerId.COUNT][ROUTE_WORDS];
+    private final int[] carCounts = new int[PlayerId.COUNT];
+    private final int[] claimPoints = new int[PlayerId.COUNT];
+    private final Ticket[][] tickets = new Ticket[PlayerId.COUNT][];
+    private final int[] ticketCounts = new int[PlayerId.COUNT];
+
+    private Ticket[] ticketDeck = new Ticket[0];
+    private int ticketTop;
+
+    private final int[] faceUpCards = new int[Constants.FACE_UP_CARDS_COUNT];
+    //the deck is deck[deckTop..deckEnd[, the discards shuffled into it are appended after deckEnd
+    private int[] deck = new int[2 * Constants.TOTAL_CARDS_COUNT];
+    private int deckTop;
+    private int deckEnd;
+    private final int[] discards = new int[Card.COUNT];
+    private int discardsSize;
+
+    private int[] journal = new int[1024];
+    private int journalSize;
+
+    //the stations connected by the routes of a player, computed by finalPoints
+    private final int[] stationParents = new int[STATION_COUNT];
+    private final StationConnectivity connectivity = (s1, s2) -> root(s1.id()) == root(s2.id());
+    //the routes of the trail explored by longestTrailLength
+    private final long[] trailBits = new long[ROUTE_WORDS];
+
+    private SimulationState() {
+    }
+
+    /**
+     * @param gameState a state of the game
+     * @return a simulation state equal to the given one
+     */
+    public static SimulationState of(GameState gameState) {
+        SimulationState state = new SimulationState();
+        state.set(gameState);
+        return state;
+    }
+
+    /**
+     * Makes this state equal to the given one, reusing its arrays, and forgets the journal
+     *
+     * @param gameState a state of the game
+     * @throws IllegalArgumentException if a player has a route which isn't one of ChMap
+     */
+    public void set(GameState gameState) {
+        currentPlayer = gameState.currentPlayerId().ordinal();
+        lastPlayer = gameState.lastPlayer() == null ? NO_PLAYER : gameState.lastPlayer().ordinal();
+
+        for (PlayerId playerId : PlayerId.ALL) {
+            int p = playerId.ordinal();
+            PlayerState playerState = gameState.playerState(playerId);
+            for (Card card : Card.ALL) hands[p][card.ordinal()] = playerState.cards().countOf(card);
+            handSizes[p] = playerState.cardCount();
+            Arrays.fill(routeBits[p], 0);
+            for (Route route : playerState.routes()) {
+                int index = route.index();
+                Preconditions.checkArgument(index >= 0);
+                routeBits[p][index / Long.SIZE] |= 1L << index;
+            }
+            carCounts[p] = playerState.carCount();
+            claimPoints[p] = playerState.claimPoints();
+            tickets[p] = playerState.tickets().toList().toArray(new Ticket[ChMap.tickets().size()]);
+            ticketCounts[p] = playerState.ticketCount();
+        }
+
+        ticketDeck = gameState.ticketDeck().toList().toArray(new Ticket[0]);
+        ticketTop = 0;
+
+        CardState cardState = gameState.fullCardState();
+        for (int slot : Constants.FACE_UP_CARD_SLOTS) faceUpCards[slot] = cardState.faceUpCard(slot).ordinal();
+        List<Card> deckCards = cardState.deck().toList();
+        deckTop = 0;
+        deckEnd = deckCards.size();
+        for (int i = 0; i < deckEnd; i++) deck[i] = deckCards.get(i).ordinal();
+        for (Card card : Card.ALL) discards[card.ordinal()] = cardState.discards().countOf(card);
+        discardsSize = cardState.discardsSize();
+
+        journalSize = 0;
+    }
+
+    /**
+     * @return a GameState equal to this state
+     */
+    public GameState toGameState() {
+        Map<PlayerId, PlayerState> playerState = new EnumMap<>(PlayerId.class);
+        for (PlayerId playerId : PlayerId.ALL) {
+            int p = playerId.ordinal();
+            playerState.put(playerId, new PlayerState(SortedBag.of(Arrays.asList(tickets[p]).subList(0, ticketCounts[p])),
+                    cardBag(hands[p]), routes(playerId)));
+        }
+
+        List<Card> faceUp = new ArrayList<>(Constants.FACE_UP_CARDS_COUNT);
+        for (int card : faceUpCards) faceUp.add(Card.ALL.get(card));
+        List<Card> deckCards = new ArrayList<>(deckSize());
+        for (int i = deckTop; i < deckEnd; i++) deckCards.add(Card.ALL.get(deck[i]));
+        CardState cardState = CardState.of(faceUp, Deck.ofOrdered(deckCards), cardBag(discards));
+
+        List<Ticket> ticketDeckList = Arrays.asList(ticketDeck).subList(ticketTop, ticketDeck.length);
+        return GameState.of(Deck.ofOrdered(ticketDeckList), cardState, currentPlayerId(), playerState, lastPlayer());
+    }
+
+    private static SortedBag<Card> cardBag(int[] counts) {
+        SortedBag.Builder<Card> builder = new SortedBag.Builder<>();
+        for (Card card : Card.ALL) {
+            for (int i = 0; i < counts[card.ordinal()]; i++) builder.add(card);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return a mark of the current state, to which undo can come back
+     */
+    public int mark() {
+        return journalSize;
+    }
+
+    /**
+     * Undoes all the transitions made since the given mark was taken
+     *
+     * @param mark a mark taken since the last call to set
+     * @throws IllegalArgumentException if the mark is greater than the current one
+     */
+    public void undo(int mark) {
+        Preconditions.checkArgument(mark >= 0 && mark <= journalSize);
+        while (journalSize > mark) {
+            switch (journal[--journalSize]) {
+                case FACE_UP_CARD:
+                    int card = journal[--journalSize];
+                    faceUpCards[journal[--journalSize]] = card;
+                    break;
+                case DECK_TOP:
+                    deckTop = journal[--journalSize];
+                    break;
+                case DECK_END:
+                    int oldEnd = journal[--journalSize];
+                    for (int i = oldEnd; i < deckEnd; i++) discards[deck[i]]++;
+                    discardsSize += deckEnd - oldEnd;
+                    deckEnd = oldEnd;
+                    break;
+                case HAND_CARD:
+                    int count = journal[--journalSize];
+                    card = journal[--journalSize];
+                    int p = journal[--journalSize];
+                    hands[p][card] -= count;
+                    handSizes[p] -= count;
+                    break;
+                case DISCARD:
+                    count = journal[--journalSize];
+                    card = journal[--journalSize];
+                    discards[card] -= count;
+                    discardsSize -= count;
+                    break;
+                case ROUTE:
+                    int index = journal[--journalSize];
+                    p = journal[--journalSize];
+                    Route route = ROUTES.get(index);
+                    routeBits[p][index / Long.SIZE] &= ~(1L << index);
+                    carCounts[p] += route.length();
+                    claimPoints[p] -= route.claimPoints();
+                    break;
+                case TICKETS:
+                    ticketTop = journal[--journalSize];
+                    ticketCounts[journal[--journalSize]] = journal[--journalSize];
+                    break;
+                case TURN:
+                    lastPlayer = journal[--journalSize];
+                    currentPlayer = journal[--journalSize];
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    private void record(int kind, int a) {
+        ensureJournalCapacity(2);
+        journal[journalSize++] = a;
+        journal[journalSize++] = kind;
+    }
+
+    private void record(int kind, int a, int b) {
+        ensureJournalCapacity(3);
+        journal[journalSize++] = a;
+        journal[journalSize++] = b;
+        journal[journalSize++] = kind;
+    }
+
+    private void record(int kind, int a, int b, int c) {
+        ensureJournalCapacity(4);
+        journal[journalSize++] = a;
+        journal[journalSize++] = b;
+        journal[journalSize++] = c;
+        journal[journalSize++] = kind;
+    }
+
+    private void ensureJournalCapacity(int count) {
+        if (journalSize + count > journal.length) journal = Arrays.copyOf(journal, 2 * journal.length);
+    }
+
+    /**
+     * @return the id of the current player
+     */
+    public PlayerId currentPlayerId() {
+        return PlayerId.ALL.get(currentPlayer);
+    }
+
+    /**
+     * @return the id of the player who plays the last turn, null if it isn't known yet
+     */
+    public PlayerId lastPlayer() {
+        return lastPlayer == NO_PLAYER ? null : PlayerId.ALL.get(lastPlayer);
+    }
+
+    /**
+     * @return the number of tickets in the ticket deck
+     */
+    public int ticketsCount() {
+        return ticketDeck.length - ticketTop;
+    }
+
+    /**
+     * @return true iff tickets can be drawn
+     */
+    public boolean canDrawTickets() {
+        return ticketsCount() != 0;
+    }
+
+    /**
+     * @param index the index of the ticket from the top of the ticket deck
+     * @return the ticket
+     * @throws IndexOutOfBoundsException if there aren't that many tickets
+     */
+    public Ticket topTicket(int index) {
+        return ticketDeck[ticketTop + Objects.checkIndex(index, ticketsCount())];
+    }
+
+    /**
+     * @return the number of cards in the deck
+     */
+    public int deckSize() {
+        return deckEnd - deckTop;
+    }
+
+    /**
+     * @return the number of discarded cards
+     */
+    public int discardsSize() {
+        return discardsSize;
+    }
+
+    /**
+     * @return true iff cards can be drawn, as in PublicGameState
+     */
+    public boolean canDrawCards() {
+        return deckSize() + discardsSize >= Constants.FACE_UP_CARDS_COUNT;
+    }
+
+    /**
+     * @param slot the slot of the card
+     * @return the face up card of the given slot
+     * @throws IndexOutOfBoundsException if the slot isn't one of the face up cards
+     */
+    public Card faceUpCard(int slot) {
+        return Card.ALL.get(faceUpCards[Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT)]);
+    }
+
+    /**
+     * @return the top card of the deck
+     * @throws IllegalArgumentException if the deck is empty
+     */
+    public Card topCard() {
+        Preconditions.checkArgument(deckSize() > 0);
+        return Card.ALL.get(deck[deckTop]);
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @param card     a card
+     * @return the number of cards of the player equal to the given one
+     */
+    public int cardCount(PlayerId playerId, Card card) {
+        return hands[playerId.ordinal()][card.ordinal()];
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the number of cards of the player
+     */
+    public int cardCount(PlayerId playerId) {
+        return handSizes[playerId.ordinal()];
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the number of tickets of the player
+     */
+    public int ticketCount(PlayerId playerId) {
+        return ticketCounts[playerId.ordinal()];
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the number of cars left to the player
+     */
+    public int carCount(PlayerId playerId) {
+        return carCounts[playerId.ordinal()];
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the points given by the routes of the player
+     */
+    public int claimPoints(PlayerId playerId) {
+        return claimPoints[playerId.ordinal()];
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @param route    a route of ChMap
+     * @return true iff the player has claimed the route
+     */
+    public boolean hasRoute(PlayerId playerId, Route route) {
+        return hasRoute(playerId.ordinal(), route.index());
+    }
+
+    private boolean hasRoute(int p, int index) {
+        Preconditions.checkArgument(index >= 0);
+        return (routeBits[p][index / Long.SIZE] & 1L << index) != 0;
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the routes of the player, in the order of ChMap.routes()
+     */
+    public List<Route> routes(PlayerId playerId) {
+        List<Route> routes = new ArrayList<>();
+        for (int index = 0; index < ROUTES.size(); index++) {
+            if (hasRoute(playerId.ordinal(), index)) routes.add(ROUTES.get(index));
+        }
+        return routes;
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the length of the longest trail of the player, as Trail.longest(routes(playerId)).length()
+     */
+    public int longestTrailLength(PlayerId playerId) {
+        int p = playerId.ordinal();
+        int longest = 0;
+        for (int word = 0; word < ROUTE_WORDS; word++) {
+            for (long bits = routeBits[p][word]; bits != 0; bits &= bits - 1) {
+                int index = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                longest = Math.max(longest, Math.max(longestTrailLength(p, index, STATIONS1[index]),
+                        longestTrailLength(p, index, STATIONS2[index])));
+            }
+        }
+        return longest;
+    }
+
+    //the length of the longest trail of the player p starting with the given route and going on from the station to,
+    //without the routes of trailBits
+    private int longestTrailLength(int p, int route, int to) {
+        trailBits[route / Long.SIZE] |= 1L << route;
+        int longest = 0;
+        for (int word = 0; word < ROUTE_WORDS; word++) {
+            for (long bits = STATION_ROUTES[to][word] & routeBits[p][word] & ~trailBits[word]; bits != 0; bits &= bits - 1) {
+                int next = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                longest = Math.max(longest, longestTrailLength(p, next, STATIONS1[next] == to ? STATIONS2[next] : STATIONS1[next]));
+            }
+        }
+        trailBits[route / Long.SIZE] &= ~(1L << route);
+        return LENGTHS[route] + longest;
+    }
+
+    /**
+     * @param route a route of ChMap
+     * @return true iff the route, or the other route between the same stations, is claimed
+     */
+    public boolean isRouteOrTwinClaimed(Route route) {
+        int index = route.index();
+        int twin = ChMap.twinRouteIndex(Math.max(index, 0));
+        for (int p = 0; p < PlayerId.COUNT; p++) {
+            if (hasRoute(p, index) || twin >= 0 && hasRoute(p, twin)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param route a route
+     * @return true iff the current player has enough cars and cards to claim the route, as in PlayerState
+     */
+    public boolean canClaimRoute(Route route) {
+        return carCounts[currentPlayer] >= route.length() && route.canBeClaimedWith(hands[currentPlayer]);
+    }
+
+    /**
+     * @param cards some cards
+     * @return true iff the current player has the given cards
+     */
+    public boolean hasCards(SortedBag<Card> cards) {
+        for (Card card : Card.ALL) {
+            if (cards.countOf(card) > hands[currentPlayer][card.ordinal()]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true iff the current player has just triggered the last turn, as in GameState
+     */
+    public boolean lastTurnBegins() {
+        return lastPlayer == NO_PLAYER && carCounts[currentPlayer] <= 2;
+    }
+
+    /**
+     * @param playerId the id of a player
+     * @return the points of the routes and the tickets of the player, as in PlayerState
+     */
+    public int finalPoints(PlayerId playerId) {
+        int p = playerId.ordinal();
+        for (int i = 0; i < STATION_COUNT; i++) stationParents[i] = i;
+        for (int index = 0; index < ROUTES.size(); index++) {
+            if (!hasRoute(p, index)) continue;
+            Route route = ROUTES.get(index);
+            stationParents[root(route.station1().id())] = root(route.station2().id());
+        }
+        int points = claimPoints[p];
+        for (int i = 0; i < ticketCounts[p]; i++) points += tickets[p][i].points(connectivity);
+        return points;
+    }
+
+    private int root(int station) {
+        while (stationParents[station] != station) station = stationParents[station];
+        return station;
+    }
+
+    /**
+     * The current player keeps some of the tickets at the top of the ticket deck, the others being removed from the
+     * game, as GameState.withChosenAdditionalTickets
+     *
+     * @param drawnCount the number of tickets drawn
+     * @param keptMask   the tickets kept, the bit i standing for topTicket(i)
+     * @throws IllegalArgumentException if there aren't enough tickets or if a kept ticket isn't drawn
+     */
+    public void drawTickets(int drawnCount, int keptMask) {
+        Preconditions.checkArgument(drawnCount >= 0 && drawnCount <= ticketsCount() && keptMask >>> drawnCount == 0);
+        record(TICKETS, ticketCounts[currentPlayer], currentPlayer, ticketTop);
+        for (int i = 0; i < drawnCount; i++) {
+            if ((keptMask & 1 << i) != 0) tickets[currentPlayer][ticketCounts[currentPlayer]++] = ticketDeck[ticketTop + i];
+        }
+        ticketTop += drawnCount;
+    }
+
+    /**
+     * Shuffles the discards into the deck if it is empty, as GameState.withCardsDeckRecreatedIfNeeded, drawing the
+     * same random numbers from rng
+     *
+     * @param rng the random generator
+     */
+    public void recreateDeckIfNeeded(Random rng) {
+        if (deckSize() != 0) return;
+        record(DECK_END, deckEnd);
+        if (deckEnd + discardsSize > deck.length) deck = Arrays.copyOf(deck, 2 * (deckEnd + discardsSize));
+
+        int start = deckEnd;
+        for (int card = 0; card < Card.COUNT; card++) {
+            for (int i = 0; i < discards[card]; i++) deck[deckEnd++] = card;
+            discards[card] = 0;
+        }
+        discardsSize = 0;
+        //the shuffle of Collections.shuffle, so that the deck is the one of Deck.of
+        for (int i = deckEnd - start; i > 1; i--) {
+            int j = start + rng.nextInt(i);
+            int card = deck[start + i - 1];
+            deck[start + i - 1] = deck[j];
+            deck[j] = card;
+        }
+    }
+
+    /**
+     * The current player draws the face up card of the given slot, replaced by the top card of the deck
+     *
+     * @param slot the slot of the card
+     * @throws IllegalArgumentException  if the deck is empty
+     * @throws IndexOutOfBoundsException if the slot isn't one of the face up cards
+     */
+    public void drawFaceUpCard(int slot) {
+        Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT);
+        Preconditions.checkArgument(deckSize() > 0);
+        addToHand(faceUpCards[slot], 1);
+        record(FACE_UP_CARD, slot, faceUpCards[slot]);
+        faceUpCards[slot] = deck[deckTop];
+        removeTopCard();
+    }
+
+    /**
+     * The current player draws the top card of the deck
+     *
+     * @throws IllegalArgumentException if the deck is empty
+     */
+    public void drawBlindCard() {
+        Preconditions.checkArgument(deckSize() > 0);
+        addToHand(deck[deckTop], 1);
+        removeTopCard();
+    }
+
+    /**
+     * Removes the top card of the deck, as GameState.withoutTopCard
+     *
+     * @throws IllegalArgumentException if the deck is empty
+     */
+    public void removeTopCard() {
+        Preconditions.checkArgument(deckSize() > 0);
+        record(DECK_TOP, deckTop);
+        deckTop++;
+    }
+
+    /**
+     * Adds the given cards to the discards, as GameState.withMoreDiscardedCards
+     *
+     * @param cards the discarded cards
+     */
+    public void discard(SortedBag<Card> cards) {
+        for (Card card : Card.ALL) {
+            int count = cards.countOf(card);
+            if (count != 0) addToDiscards(card.ordinal(), count);
+        }
+    }
+
+    /**
+     * The current player claims the given route with the given cards, which are discarded, as
+     * GameState.withClaimedRoute
+     *
+     * @param route a route of ChMap, not claimed yet
+     * @param cards the cards used, which the current player must have
+     * @throws IllegalArgumentException if the route isn't one of ChMap or is already claimed, or if the player
+     *                                  doesn't have the cards
+     */
+    public void claimRoute(Route route, SortedBag<Card> cards) {
+        int index = route.index();
+        Preconditions.checkArgument(index >= 0 && !hasRoute(0, index) && !hasRoute(1, index) && hasCards(cards));
+        for (Card card : Card.ALL) {
+            int count = cards.countOf(card);
+            if (count == 0) continue;
+            addToHand(card.ordinal(), -count);
+            addToDiscards(card.ordinal(), count);
+        }
+        record(ROUTE, currentPlayer, index);
+        routeBits[currentPlayer][index / Long.SIZE] |= 1L << index;
+        carCounts[currentPlayer] -= route.length();
+        claimPoints[currentPlayer] += route.claimPoints();
+    }
+
+    /**
+     * Ends the turn of the current player, as GameState.forNextTurn
+     */
+    public void nextTurn() {
+        record(TURN, currentPlayer, lastPlayer);
+        if (lastTurnBegins()) lastPlayer = currentPlayer;
+        currentPlayer = (currentPlayer + 1) % PlayerId.COUNT;
+    }
+
+    private void addToHand(int card, int count) {
+        record(HAND_CARD, currentPlayer, card, count);
+        hands[currentPlayer][card] += count;
+        handSizes[currentPlayer] += count;
+    }
+
+    private void addToDiscards(int card, int count) {
+        record(DISCARD, card, count);
+        discards[card] += count;
+        discardsSize += count;
+    }
+}
@@ -0,0 +1,25 @@
+package ch.epfl.tchu.game;
+
+/**
+ * Someone watching a game without playing it: it receives the infos the players receive and the public states of the
+ * game, but never the private state of a player
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public interface Spectator {
+
+    /**
+     * called each time the players receive an info
+     *
+     * @param info the info
+     */
+    void receiveInfo(String info);
+
+    /**
+     * called each time the players receive a new state of the game
+     *
+     * @param newState the public part of the new state
+     */
+    void updateState(PublicGameState newState);
+}
@@ -1,12 +1,15 @@
 package ch.epfl.tchu.game;
 import ch.epfl.tchu.Preconditions;
 
+import java.util.Arrays;
+
 /**
  * Each station with its representative
  * @author Mamoun Chami (325917)
  * @author Ismael Berrada (327482)
  */
 public final class StationPartition implements StationConnectivity {
+    //the representative of each station : the partition is always flattened, like a fully compressed union-find
     private final int[] links;
 
     @Override
@@ -17,8 +20,36 @@ public final class StationPartition implements StationConnectivity {
 
     }
 
+    //takes the given array, which mustn't be modified afterwards
     private StationPartition(int[] links) {
-        this.links = links.clone();
+        this.links = links;
+    }
+
+    /**
+     * Computes the partition in which the two given stations are also connected, without modifying this one
+     * @param s1 the first station
+     * @param s2 the second station
+     * @return the new partition, in which the representative of the stations of the smallest class is the one of the
+     * other class
+     */
+    public StationPartition withConnected(Station s1, Station s2) {
+        int[] newLinks = Arrays.copyOf(links, Math.max(links.length, Math.max(s1.id(), s2.id()) + 1));
+        for (int i = links.length; i < newLinks.length; i++) newLinks[i] = i;
+        int r1 = newLinks[s1.id()];
+        int r2 = newLinks[s2.id()];
+        if (r1 == r2) return this;
+
+        int size1 = 0, size2 = 0;
+        for (int link : newLinks) {
+            if (link == r1) ++size1;
+            else if (link == r2) ++size2;
+        }
+        int from = size1 < size2 ? r1 : r2;
+        int to = size1 < size2 ? r2 : r1;
+        for (int i = 0; i < newLinks.length; i++) {
+            if (newLinks[i] == from) newLinks[i] = to;
+        }
+        return new StationPartition(newLinks);
     }
 
     /**
@@ -26,6 +57,7 @@ public final class StationPartition implements StationConnectivity {
      */
     static public final class Builder {
         private final int[] a;
+        private final int[] rank;
 
         /**
          * The constructor of the builder
@@ -35,27 +67,39 @@ public final class StationPartition implements StationConnectivity {
         public Builder(int stationCount) {
             Preconditions.checkArgument(stationCount >= 0);
             a = new int[stationCount];
+            rank = new int[stationCount];
             for (int i = 0; i < stationCount; i++) {
                 a[i] = i;
             }
 
         }
 
+        //finds the representative, making every station of the path point to its grandparent (path halving)
         private int representative(int sid) {
             while (a[sid] != sid) {
+                a[sid] = a[a[sid]];
                 sid = a[sid];
             }
             return sid;
         }
 
         /**
-         * Links a station to the representative of another
+         * Links the representative of a station to the representative of another (the one of the smallest tree
+         * is attached to the other)
          * @param s1 the station linked
          * @param s2 the representative of this station is used
-         * @return
+         * @return the builder
          */
         public Builder connect(Station s1, Station s2) {
-            a[representative(s1.id())] = representative(s2.id());
+            int r1 = representative(s1.id());
+            int r2 = representative(s2.id());
+            if (r1 == r2) return this;
+            if (rank[r1] > rank[r2]) {
+                a[r2] = r1;
+            } else {
+                a[r1] = r2;
+                if (rank[r1] == rank[r2]) ++rank[r2];
+            }
             return this;
         }
 
@@ -67,7 +111,8 @@ public final class StationPartition implements StationConnectivity {
             for(int i = 0; i < a.length; i++) {
                 a[i] = representative(i);
             }
-            return new StationPartition(a);
+            //the builder can still be used
+            return new StationPartition(a.clone());
         }
     }
 
@@ -3,6 +3,7 @@ package ch.epfl.tchu.game;
 import ch.epfl.tchu.Preconditions;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.TreeSet;
@@ -15,6 +16,9 @@ import java.util.TreeSet;
 public final class Ticket implements Comparable<Ticket>{
 
 	private final List<Trip> trips;
+	private final String text;
+	//the rank of the text of the ticket among the texts of the tickets of ChMap, -1 for the other tickets
+	private int key = -1;
 
 	/**
 	 * Constructs a ticket with the trips
@@ -28,6 +32,7 @@ public final class Ticket implements Comparable<Ticket>{
 			Preconditions.checkArgument(trips.get(i-1).from().name() == trips.get(i).from().name());
 		}
 		this.trips = new ArrayList<>(trips);
+		this.text = computeText(trips).intern();
 	}
 
 	/**
@@ -68,7 +73,26 @@ public final class Ticket implements Comparable<Ticket>{
 	 * @return the text on the ticket
 	 */
 	public String text() {
-		return computeText(trips);
+		return text;
+	}
+
+	/**
+	 * Gives to each of the given tickets the rank of its text among theirs, so that they are compared without
+	 * comparing their texts. Called once, with the tickets of ChMap.
+	 * @param tickets the tickets
+	 */
+	static void assignKeys(List<Ticket> tickets) {
+		List<Ticket> sorted = new ArrayList<>(tickets);
+		sorted.sort(Comparator.comparing(Ticket::text));
+		int key = -1;
+		String previousText = null;
+		for (Ticket ticket : sorted) {
+			if (!ticket.text.equals(previousText)) {
+				++key;
+				previousText = ticket.text;
+			}
+			ticket.key = key;
+		}
 	}
 
 
@@ -80,7 +104,8 @@ public final class Ticket implements Comparable<Ticket>{
 	 */
 	@Override
 	public int compareTo(Ticket that) {
-		return text().compareTo(that.text());
+		if (key >= 0 && that.key >= 0) return Integer.compare(key, that.key);
+		return text == that.text ? 0 : text.compareTo(that.text);
 	}
 
 	/**
@@ -89,9 +114,9 @@ public final class Ticket implements Comparable<Ticket>{
 	 * @return the points the ticket will give
 	 */
 	public int points(StationConnectivity connectivity) {
-		int tempPoints = trips.get(0).points(connectivity);
+		int tempPoints = Integer.MIN_VALUE;
 		for(Trip trip : trips){
-			if(tempPoints < trip.points(connectivity)) tempPoints = trip.points(connectivity);
+			tempPoints = Math.max(tempPoints, trip.points(connectivity));
 		}
 		return tempPoints;
 	}
@@ -1,6 +1,8 @@
 package ch.epfl.tchu.game;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -30,41 +32,7 @@ public final class Trail {
      */
     public static Trail longest(List<Route> routes){
         if(routes.isEmpty()) return EMPTYTRAIL;
-        List<Trail> trails = new ArrayList<>();
-        Trail maxTrail = EMPTYTRAIL;
-        for(Route route : routes){
-            Trail firstTrail = new Trail(route.station1(), route.station2(), List.of(route), route.length());
-            maxTrail = firstTrail.length > maxTrail.length ? firstTrail : maxTrail;
-            Trail secondTrail = new Trail(route.station2(), route.station1(), List.of(route), route.length());
-            maxTrail = secondTrail.length > maxTrail.length ? secondTrail : maxTrail;
-            trails.add(firstTrail);
-            trails.add(secondTrail);
-        }
-        while(!trails.isEmpty()){
-            List<Trail> trails2 = new ArrayList<>();
-            for(Trail trail : trails){
-                for(Route route : routes){
-                    if(!trail.routes.contains(route)){
-                        if(route.station1() == trail.station2()) {
-                                List <Route> newRoutes = new ArrayList<>(trail.routes);
-                                newRoutes.add(route);
-                                Trail newTrail = new Trail(trail.station1(), route.station2(), newRoutes, trail.length + route.length());
-                                trails2.add(newTrail);
-                                maxTrail = newTrail.length > maxTrail.length ? newTrail : maxTrail;
-                        }
-                        if(route.station2() == trail.station2()) {
-                                 List <Route> newRoutes = new ArrayList<>(trail.routes);
-                                 newRoutes.add(route);
-                                 Trail newTrail = new Trail(trail.station1(), route.station1(), newRoutes, trail.length + route.length());
-                                 trails2.add(newTrail);
-                                 maxTrail = newTrail.length > maxTrail.length ? newTrail : maxTrail;
-                        }
-                    }
-                }
-                trails = trails2;
-            }
-        }
-        return maxTrail;
+        return new Search(routes).longest();
     }
 
     /**
@@ -107,4 +75,101 @@ public final class Trail {
         }
         return String.join(" - ", stationNames) + " (" + length + ")";
     }
+
+    /**
+     * The backtracking search behind longest : the routes are stored as an adjacency table indexed by the ids
+     * of the stations and the routes already used by the current trail are marked in a bitset, so that the
+     * search only allocates its arrays once.
+     * The trails are explored in the same order as the routes of the list (from station1 to station2 first), and
+     * a trail only replaces the best one if it is longer, or as long but made of fewer routes : this gives the same
+     * trail as a search growing all the trails one route at a time.
+     */
+    private static final class Search {
+        private final List<Route> routes;
+        private final int[] lengths;
+        private final int[] stations1;
+        private final int[] stations2;
+        private final int[] firstEdge;
+        private final int[] edges;
+        private final long[] used;
+        private final int[] path;
+        private final int[] bestPath;
+        private int bestLength;
+        private int bestCount;
+        private int bestStart;
+
+        private Search(List<Route> routes) {
+            this.routes = routes;
+            int routeCount = routes.size();
+            lengths = new int[routeCount];
+            stations1 = new int[routeCount];
+            stations2 = new int[routeCount];
+            int idMax = 0;
+            for (int i = 0; i < routeCount; i++) {
+                Route route = routes.get(i);
+                lengths[i] = route.length();
+                stations1[i] = route.station1().id();
+                stations2[i] = route.station2().id();
+                idMax = Math.max(idMax, Math.max(stations1[i], stations2[i]));
+            }
+
+            //the routes touching the station of id s are edges[firstEdge[s]] to edges[firstEdge[s + 1] - 1], in the order of the list
+            firstEdge = new int[idMax + 2];
+            for (int i = 0; i < routeCount; i++) {
+                ++firstEdge[stations1[i] + 1];
+                ++firstEdge[stations2[i] + 1];
+            }
+            for (int s = 0; s <= idMax; s++) firstEdge[s + 1] += firstEdge[s];
+            edges = new int[2 * routeCount];
+            int[] next = Arrays.copyOf(firstEdge, idMax + 1);
+            for (int i = 0; i < routeCount; i++) {
+                edges[next[stations1[i]]++] = i;
+                edges[next[stations2[i]]++] = i;
+            }
+
+            used = new long[(routeCount + Long.SIZE - 1) / Long.SIZE];
+            path = new int[routeCount];
+            bestPath = new int[routeCount];
+        }
+
+        private Trail longest() {
+            for (int i = 0; i < routes.size(); i++) {
+                start(i, stations1[i], stations2[i]);
+                start(i, stations2[i], stations1[i]);
+            }
+            List<Route> trailRoutes = new ArrayList<>(bestCount);
+            for (int i = 0; i < bestCount; i++) trailRoutes.add(routes.get(bestPath[i]));
+            Route first = trailRoutes.get(0);
+            Station stationStart = first.station1().id() == bestStart ? first.station1() : first.station2();
+            Station stationEnd = stationStart;
+            for (Route route : trailRoutes) stationEnd = route.stationOpposite(stationEnd);
+            return new Trail(stationStart, stationEnd, Collections.unmodifiableList(trailRoutes), bestLength);
+        }
+
+        private void start(int route, int from, int to) {
+            bestStart = extend(route, 0, 0, to) ? from : bestStart;
+        }
+
+        //adds the route to the current trail, ending at the station to, and explores all its extensions
+        //returns true iff the best trail has been replaced by one starting with this route
+        private boolean extend(int route, int count, int length, int to) {
+            path[count++] = route;
+            length += lengths[route];
+            used[route / Long.SIZE] |= 1L << route;
+            boolean improved = false;
+            if (length > bestLength || (length == bestLength && count < bestCount)) {
+                System.arraycopy(path, 0, bestPath, 0, count);
+                bestLength = length;
+                bestCount = count;
+                improved = true;
+            }
+            for (int e = firstEdge[to]; e < firstEdge[to + 1]; e++) {
+                int next = edges[e];
+                if ((used[next / Long.SIZE] & (1L << next)) == 0)
+                    improved |= extend(next, count, length, stations1[next] == to ? stations2[next] : stations1[next]);
+            }
+            used[route / Long.SIZE] &= ~(1L << route);
+            return improved;
+        }
+    }
 }
@@ -1,10 +1,12 @@
 package ch.epfl.tchu.gui;
 
+import ch.epfl.tchu.net.GameExecutors;
 import ch.epfl.tchu.net.RemotePlayerClient;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The ClientMain class of the package contains the main program for the tCHu client. Since this is a JavaFX application, this class inherits from Application, and its main method as usual does nothing but call launch.
@@ -36,6 +38,8 @@ public final class ClientMain extends Application {
         }
         GraphicalPlayerAdapter playerAdapter = new GraphicalPlayerAdapter();
         RemotePlayerClient client = new RemotePlayerClient(playerAdapter, host,port);
-        new Thread(client::run).start();
+        ExecutorService clientExecutor = GameExecutors.newThreadPerTaskExecutor();
+        clientExecutor.execute(client::run);
+        clientExecutor.shutdown();
     }
 }
\ No newline at end of file
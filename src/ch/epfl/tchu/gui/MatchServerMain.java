@@ -0,0 +1,51 @@
+package ch.epfl.tchu.gui;
+
+import ch.epfl.tchu.game.GameSnapshots;
+import ch.epfl.tchu.game.PlayerId;
+import ch.epfl.tchu.net.GameExecutors;
+import ch.epfl.tchu.net.MatchServer;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The main program of a server without graphical interface, on which the clients connecting play against each other.
+ * Its games run on virtual threads when the Java runtime has them, on a pool of maxGames threads otherwise.
+ * Given a file, it saves the states of its games in it as GameSnapshots, forgetting those of its previous run. The spectators connect on the port following
+ * the one of the players.
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class MatchServerMain {
+
+    private static final int PORT = 5108;
+    private static final int MAX_GAMES = 256;
+
+    private MatchServerMain() {
+    }
+
+    /**
+     * runs the server until the program is stopped
+     * @param args optionally the port of the server and the maximal number of games played at the same time, then
+     *             the file of the snapshots of the games
+     */
+    public static void main(String[] args) {
+        int port = PORT;
+        int maxGames = MAX_GAMES;
+        if (args.length >= 2) {
+            port = Integer.parseInt(args[0]);
+            maxGames = Integer.parseInt(args[1]);
+        }
+        Map<PlayerId, String> playerNames = Map.of(PlayerId.PLAYER_1, ServerMain.PLAYER_ADA,
+                PlayerId.PLAYER_2, ServerMain.PLAYER_CHARLES);
+        ExecutorService games = GameExecutors.hasVirtualThreads()
+                ? GameExecutors.newThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(maxGames);
+        GameSnapshots snapshots = args.length >= 3 ? GameSnapshots.open(Path.of(args[2])) : null;
+        MatchServer server = new MatchServer(port, maxGames, playerNames, games, snapshots);
+        server.acceptSpectators(port + 1);
+        server.run();
+    }
+}
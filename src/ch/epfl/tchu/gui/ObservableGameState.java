@@ -6,8 +6,7 @@ import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Represents the state of the game visible by the player
@@ -32,6 +31,7 @@ public final class ObservableGameState {
 
     private final PlayerId playerId;
     private PlayerState playerState;
+    private final PlayerId[] owners = new PlayerId[ChMap.routes().size()];
 
     /**
      * Constructor of the observable game state
@@ -84,66 +84,74 @@ public final class ObservableGameState {
     }
 
     /**
-     * Updates the state of the game visible by the player using the arguments
+     * Updates the state of the game visible by the player using the arguments, computing again only what depends
+     * on the parts of the states which changed since the previous update
      * @param gameState the public game state
      * @param playerState the player state of the ObservableGameState
      */
     public void setState(PublicGameState gameState, PlayerState playerState) {
 
+        PlayerState previousPlayerState = this.playerState;
         this.playerState = playerState;
+        boolean cardsChanged = previousPlayerState == null || !previousPlayerState.cards().equals(playerState.cards());
+        boolean carsChanged = previousPlayerState == null || previousPlayerState.carCount() != playerState.carCount();
 
-        //sets the percentages
+        //sets the percentages (like the other properties, they only notify their listeners if their value changes)
         percentageTicketsLeft.set(calculatePercentage(gameState.ticketsCount(), ChMap.tickets().size()));
         percentageCardsLeft.set(calculatePercentage(gameState.cardState().deckSize(), Constants.TOTAL_CARDS_COUNT));
 
         //sets the faceUpCards
         for (int slot : Constants.FACE_UP_CARD_SLOTS){
-            Card newCard = gameState.cardState().faceUpCard(slot);
-            faceUpCards.get(slot).set(newCard);
+            faceUpCards.get(slot).set(gameState.cardState().faceUpCard(slot));
         }
 
         //sets the routes' owners and if the player can take them
-        for (Route route : ChMap.routes()){
-            int index = ChMap.routes().indexOf(route);
-
-            if(gameState.playerState(playerId).routes().contains(route))
-                routeOwners.get(index).set(playerId);
-            else {
-                if(gameState.playerState(playerId.next()).routes().contains(route))
-                    routeOwners.get(index).set(playerId.next());
-                else routeOwners.get(index).set(null);
-            }
-
-            canTakeRoute.get(index)
-                    .set(playerState.canClaimRoute(route) && routeOwners.get(index).get() == null && canTakeDoubledRoute(route, gameState.claimedRoutes()));
-
-        }
+        boolean ownersChanged = updateRouteOwners(gameState);
+        if (ownersChanged || cardsChanged || carsChanged) updateCanTakeRoute(gameState);
 
         //sets the tickets count, the cards count, the cars count and the construction points of both players
         for (PlayerId id : PlayerId.ALL) {
-            int index = PlayerId.ALL.indexOf(id);
+            int index = id.ordinal();
             ticketCount.get(index).set(gameState.playerState(id).ticketCount());
             cardsCount.get(index).set(gameState.playerState(id).cardCount());
             carsCount.get(index).set(gameState.playerState(id).carCount());
             constructionPoints.get(index).set(gameState.playerState(id).claimPoints());
         }
 
-        //sets the
-        tickets.setAll(playerState.tickets().toList());
+        //sets the tickets and the cards of the player
+        if (previousPlayerState == null || !previousPlayerState.tickets().equals(playerState.tickets()))
+            tickets.setAll(playerState.tickets().toList());
 
-        for (int i = 0; i < Card.ALL.size(); i++) {
-            Card card = Card.ALL.get(i);
-            cardsTypeCount.get(i).set(playerState.cards().countOf(card));
+        if (cardsChanged) {
+            for (int i = 0; i < Card.ALL.size(); i++) {
+                cardsTypeCount.get(i).set(playerState.cards().countOf(Card.ALL.get(i)));
+            }
         }
+    }
 
+    //sets the owner of the routes whose owner changed, and tells if there was one
+    private boolean updateRouteOwners(PublicGameState gameState) {
+        PlayerId[] newOwners = new PlayerId[owners.length];
+        for (PlayerId id : PlayerId.ALL) {
+            for (Route route : gameState.playerState(id).routes()) newOwners[ChMap.routeIndex(route)] = id;
+        }
 
+        boolean changed = false;
+        for (int i = 0; i < owners.length; i++) {
+            if (newOwners[i] != owners[i]) {
+                owners[i] = newOwners[i];
+                routeOwners.get(i).set(newOwners[i]);
+                changed = true;
+            }
+        }
+        return changed;
     }
 
-    private boolean canTakeDoubledRoute(Route route, List<Route> claimedRoutes){
-        for (Route claimedRoute : claimedRoutes) {
-            if(route.stations().equals(claimedRoute.stations())) return false;
+    private void updateCanTakeRoute(PublicGameState gameState) {
+        for (int i = 0; i < owners.length; i++) {
+            Route route = ChMap.routes().get(i);
+            canTakeRoute.get(i).set(!gameState.isRouteOrTwinClaimed(route) && playerState.canClaimRoute(route));
         }
-        return true;
     }
 
     /**
@@ -5,6 +5,7 @@ import ch.epfl.tchu.game.ChMap;
 import ch.epfl.tchu.game.Game;
 import ch.epfl.tchu.game.Player;
 import ch.epfl.tchu.game.PlayerId;
+import ch.epfl.tchu.net.GameExecutors;
 import ch.epfl.tchu.net.RemotePlayerProxy;
 import javafx.application.Application;
 import javafx.stage.Stage;
@@ -13,6 +14,7 @@ import java.net.ServerSocket;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The main program of the server of the game
@@ -46,6 +48,8 @@ public final class ServerMain extends Application {
         Map<PlayerId, Player> playerIds = Map.of(PlayerId.PLAYER_1, firstPlayer, PlayerId.PLAYER_2, secondPlayer);
 
         //Starts the game
-        new Thread( () -> Game.play(playerIds, playerNames, SortedBag.of(ChMap.tickets()), new Random())).start();
+        ExecutorService gameExecutor = GameExecutors.newThreadPerTaskExecutor();
+        gameExecutor.execute(() -> Game.play(playerIds, playerNames, SortedBag.of(ChMap.tickets()), new Random()));
+        gameExecutor.shutdown();
     }
 }
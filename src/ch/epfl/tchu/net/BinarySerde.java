@@ -0,0 +1,73 @@
+package ch.epfl.tchu.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The interface writing an object in a compact binary form and reading it back
+ * @param <T> The object to write or read
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public interface BinarySerde<T> {
+
+    /**
+     * Writes the object at the position of the buffer
+     * @param object the object to write
+     * @param buffer the buffer in which the object is written
+     */
+    void write(T object, ByteBuffer buffer);
+
+    /**
+     * Reads an object at the position of the buffer
+     * @param buffer the buffer from which the object is read
+     * @return the object read
+     */
+    T read(ByteBuffer buffer);
+
+    /**
+     * a Serde putting the binary form of the objects in Base64, so that it can be sent in the textual messages
+     * @param serde the BinarySerde writing and reading the objects
+     * @param maxSize the maximum number of bytes of an object written by the serde
+     * @param <T> the type of object to be serialized and deserialized
+     * @return the Serde corresponding to the parameter T
+     */
+    static <T> Serde<T> base64(BinarySerde<T> serde, int maxSize) {
+        return Serde.of(t -> {
+            ByteBuffer buffer = ByteBuffer.allocate(maxSize);
+            serde.write(t, buffer);
+            return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+        }, chain -> serde.read(ByteBuffer.wrap(Base64.getDecoder().decode(chain))));
+    }
+
+    /**
+     * Writes a non negative integer using 7 bits per byte, the highest bit telling if another byte follows
+     * @param value the integer to write
+     * @param buffer the buffer in which the integer is written
+     */
+    static void writeVarInt(int value, ByteBuffer buffer) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a non negative integer written by writeVarInt
+     * @param buffer the buffer from which the integer is read
+     * @return the integer read
+     */
+    static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,209 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * The class having the BinarySerdes of the states of the game : the integers are written as varints, the sets of
+ * routes as bit masks over ChMap.routes() and the counts of cards as nibbles.
+ * The routes read back are in the order of ChMap.routes().
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class BinarySerdes {
+
+    private BinarySerdes() {
+    }
+
+    /**
+     * The maximum number of bytes written by the BinarySerdes of this class
+     */
+    public static final int MAX_SIZE = 512;
+
+    private static final List<Route> ROUTES = ChMap.routes();
+    private static final List<Ticket> TICKETS = ChMap.tickets();
+    private static final Map<Ticket, Integer> TICKET_INDICES = indices(TICKETS);
+    private static final int ROUTE_MASK_BYTES = (ROUTES.size() + Byte.SIZE - 1) / Byte.SIZE;
+    private static final int NO_PLAYER = 0xF;
+
+    private static <T> Map<T, Integer> indices(List<T> values) {
+        Map<T, Integer> indices = new IdentityHashMap<>();
+        for (int i = values.size() - 1; i >= 0; i--) indices.put(values.get(i), i);
+        return indices;
+    }
+
+    //writes two values between 0 and 15 in a single byte
+    private static void writeNibbles(int low, int high, ByteBuffer buffer) {
+        assert 0 <= low && low <= 0xF && 0 <= high && high <= 0xF;
+        buffer.put((byte) (low | high << 4));
+    }
+
+    //the index of the route in ChMap.routes()
+    static int routeIndex(Route route) {
+        return ChMap.routeIndex(route);
+    }
+
+    //the route of the given index in ChMap.routes()
+    static Route route(int index) {
+        return ROUTES.get(index);
+    }
+
+    private static void writeRoutes(List<Route> routes, ByteBuffer buffer) {
+        byte[] mask = new byte[ROUTE_MASK_BYTES];
+        for (Route route : routes) {
+            int index = ChMap.routeIndex(route);
+            mask[index / Byte.SIZE] |= 1 << (index % Byte.SIZE);
+        }
+        buffer.put(mask);
+    }
+
+    private static List<Route> readRoutes(ByteBuffer buffer) {
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < ROUTE_MASK_BYTES; i++) {
+            int bits = buffer.get() & 0xFF;
+            while (bits != 0) {
+                routes.add(ROUTES.get(i * Byte.SIZE + Integer.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Writing and reading of a PublicCardState : the face up cards as nibbles, then the sizes of the deck and discard
+     */
+    public static final BinarySerde<PublicCardState> publicCardState = new BinarySerde<>() {
+        @Override
+        public void write(PublicCardState pcs, ByteBuffer buffer) {
+            for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot += 2) {
+                int next = slot + 1 < Constants.FACE_UP_CARDS_COUNT ? pcs.faceUpCard(slot + 1).ordinal() : 0;
+                writeNibbles(pcs.faceUpCard(slot).ordinal(), next, buffer);
+            }
+            BinarySerde.writeVarInt(pcs.deckSize(), buffer);
+            BinarySerde.writeVarInt(pcs.discardsSize(), buffer);
+        }
+
+        @Override
+        public PublicCardState read(ByteBuffer buffer) {
+            List<Card> faceUpCards = new ArrayList<>(Constants.FACE_UP_CARDS_COUNT);
+            for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot += 2) {
+                int b = buffer.get();
+                faceUpCards.add(Card.ALL.get(b & 0xF));
+                if (slot + 1 < Constants.FACE_UP_CARDS_COUNT) faceUpCards.add(Card.ALL.get((b >> 4) & 0xF));
+            }
+            int deckSize = BinarySerde.readVarInt(buffer);
+            int discardsSize = BinarySerde.readVarInt(buffer);
+            return new PublicCardState(faceUpCards, deckSize, discardsSize);
+        }
+    };
+
+    /**
+     * Writing and reading of a PublicPlayerState : the counts of tickets and cards, then the mask of the routes
+     */
+    public static final BinarySerde<PublicPlayerState> publicPlayerState = new BinarySerde<>() {
+        @Override
+        public void write(PublicPlayerState pps, ByteBuffer buffer) {
+            BinarySerde.writeVarInt(pps.ticketCount(), buffer);
+            BinarySerde.writeVarInt(pps.cardCount(), buffer);
+            writeRoutes(pps.routes(), buffer);
+        }
+
+        @Override
+        public PublicPlayerState read(ByteBuffer buffer) {
+            int ticketCount = BinarySerde.readVarInt(buffer);
+            int cardCount = BinarySerde.readVarInt(buffer);
+            return new PublicPlayerState(ticketCount, cardCount, readRoutes(buffer));
+        }
+    };
+
+    /**
+     * Writing and reading of a bag of tickets : their count, then the index of each one
+     */
+    public static final BinarySerde<SortedBag<Ticket>> tickets = new BinarySerde<>() {
+        @Override
+        public void write(SortedBag<Ticket> tickets, ByteBuffer buffer) {
+            BinarySerde.writeVarInt(tickets.size(), buffer);
+            for (Ticket ticket : tickets) BinarySerde.writeVarInt(TICKET_INDICES.get(ticket), buffer);
+        }
+
+        @Override
+        public SortedBag<Ticket> read(ByteBuffer buffer) {
+            SortedBag.Builder<Ticket> tickets = new SortedBag.Builder<>();
+            int ticketCount = BinarySerde.readVarInt(buffer);
+            for (int i = 0; i < ticketCount; i++) tickets.add(TICKETS.get(BinarySerde.readVarInt(buffer)));
+            return tickets.build();
+        }
+    };
+
+    /**
+     * Writing and reading of a bag of cards : the count of each card as a nibble
+     */
+    public static final BinarySerde<SortedBag<Card>> cards = new BinarySerde<>() {
+        @Override
+        public void write(SortedBag<Card> cards, ByteBuffer buffer) {
+            for (int i = 0; i < Card.COUNT; i += 2) {
+                int next = i + 1 < Card.COUNT ? cards.countOf(Card.ALL.get(i + 1)) : 0;
+                writeNibbles(cards.countOf(Card.ALL.get(i)), next, buffer);
+            }
+        }
+
+        @Override
+        public SortedBag<Card> read(ByteBuffer buffer) {
+            SortedBag.Builder<Card> cards = new SortedBag.Builder<>();
+            for (int i = 0; i < Card.COUNT; i += 2) {
+                int b = buffer.get();
+                cards.add(b & 0xF, Card.ALL.get(i));
+                if (i + 1 < Card.COUNT) cards.add((b >> 4) & 0xF, Card.ALL.get(i + 1));
+            }
+            return cards.build();
+        }
+    };
+
+    /**
+     * Writing and reading of a PlayerState : its tickets, its cards, then the mask of its routes
+     */
+    public static final BinarySerde<PlayerState> playerState = new BinarySerde<>() {
+        @Override
+        public void write(PlayerState ps, ByteBuffer buffer) {
+            tickets.write(ps.tickets(), buffer);
+            cards.write(ps.cards(), buffer);
+            writeRoutes(ps.routes(), buffer);
+        }
+
+        @Override
+        public PlayerState read(ByteBuffer buffer) {
+            SortedBag<Ticket> playerTickets = tickets.read(buffer);
+            SortedBag<Card> playerCards = cards.read(buffer);
+            return new PlayerState(playerTickets, playerCards, readRoutes(buffer));
+        }
+    };
+
+    /**
+     * Writing and reading of a PublicGameState : the count of tickets, the card state, the current and last players
+     * as nibbles (15 if there is no last player), then the states of the players
+     */
+    public static final BinarySerde<PublicGameState> publicGameState = new BinarySerde<>() {
+        @Override
+        public void write(PublicGameState pgs, ByteBuffer buffer) {
+            BinarySerde.writeVarInt(pgs.ticketsCount(), buffer);
+            publicCardState.write(pgs.cardState(), buffer);
+            writeNibbles(pgs.currentPlayerId().ordinal(), pgs.lastPlayer() != null ? pgs.lastPlayer().ordinal() : NO_PLAYER, buffer);
+            for (PlayerId playerId : PlayerId.ALL) publicPlayerState.write(pgs.playerState(playerId), buffer);
+        }
+
+        @Override
+        public PublicGameState read(ByteBuffer buffer) {
+            int ticketsCount = BinarySerde.readVarInt(buffer);
+            PublicCardState cardState = publicCardState.read(buffer);
+            int players = buffer.get();
+            PlayerId currentPlayerId = PlayerId.ALL.get(players & 0xF);
+            PlayerId lastPlayer = ((players >> 4) & 0xF) != NO_PLAYER ? PlayerId.ALL.get((players >> 4) & 0xF) : null;
+            Map<PlayerId, PublicPlayerState> playerStates = new EnumMap<>(PlayerId.class);
+            for (PlayerId playerId : PlayerId.ALL) playerStates.put(playerId, publicPlayerState.read(buffer));
+            return new PublicGameState(ticketsCount, cardState, currentPlayerId, playerStates, lastPlayer);
+        }
+    };
+}
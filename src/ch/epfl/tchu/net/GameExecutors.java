@@ -0,0 +1,41 @@
+package ch.epfl.tchu.net;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executors on which the games and the clients of remote players can run. A game, like the loop of a client,
+ * spends nearly all its time waiting for the other side, so a thread for each of them is the simplest model; on a
+ * Java runtime with virtual threads (Java 21 and later) such a thread costs a few kilobytes instead of a whole stack.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class GameExecutors {
+
+    private GameExecutors() {
+    }
+
+    /**
+     * @return true if the Java runtime has virtual threads
+     */
+    public static boolean hasVirtualThreads() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * creates an executor starting a new thread for each task, a virtual one if the Java runtime has them
+     *
+     * @return the executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        if (!hasVirtualThreads()) return Executors.newCachedThreadPool();
+        try {
+            //looked up by reflection, the sources still target Java 11
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A server hosting many games at once. A single thread accepts the clients and does all their input and output
+ * through a selector, without ever blocking on one of them. The clients are paired in the order in which they
+ * connect, and each pair plays a game on an executor, at most maxGames at the same time; the pairs formed while
+ * that many games are being played wait for one of them to end. The server can save the state of its games in
+ * GameSnapshots, before each of their turns, so that those interrupted by a crash can be read back with
+ * GameSnapshots.load and resumed with Game.resume, and let spectators watch them.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class MatchServer implements Closeable {
+
+    private static final int BUFFER_SIZE = 4096;
+    //the clients connecting at the same time, beyond which the system drops them
+    private static final int BACKLOG = 1024;
+    //marks the end of the messages of a client, compared by identity
+    private static final String GONE = new String();
+    //the frames a spectator can be behind, beyond which it only gets the current state
+    private static final int MAX_BACKLOG = 128;
+    //the length of the longest answer of a client, the choice of its initial tickets or the cards of a claim
+    private static final int MAX_MESSAGE_LENGTH = Math.max(
+            Serdes.serBagTicket.serialize(SortedBag.of(Constants.INITIAL_TICKETS_COUNT,
+                    ChMap.tickets().get(ChMap.tickets().size() - 1))).length(),
+            Serdes.serBagCard.serialize(SortedBag.of(Constants.MAX_ROUTE_LENGTH, Card.LOCOMOTIVE)).length());
+    //a client answers a request at a time, the next one being sent once its answer has been taken
+    private static final int MAX_PENDING_ANSWERS = 1;
+    //the length of the longest id of a game a spectator can send, the one of Long.MIN_VALUE
+    private static final int MAX_ID_LENGTH = String.valueOf(Long.MIN_VALUE).length();
+
+    private final Map<PlayerId, String> playerNames;
+    private final SortedBag<Ticket> tickets = SortedBag.of(ChMap.tickets());
+    private final ExecutorService games;
+    private final Semaphore gameSlots;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    //the keys of the clients and spectators having something to write
+    private final Queue<SelectionKey> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final List<Connection> waiting = new ArrayList<>();
+    //null until acceptSpectators is called
+    private ServerSocketChannel spectatorChannel;
+    //the games being played, by id
+    private final Map<Long, Broadcast> broadcasts = new ConcurrentHashMap<>();
+    //null if the games aren't saved
+    private final GameSnapshots snapshots;
+    private long nextGameId;
+    //flushes the messages no request has flushed, e.g. the last ones of a game
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+    private volatile boolean closed;
+
+    /**
+     * Opens a server on the given port, playing its games on a pool of maxGames threads
+     *
+     * @param port        the port on which the clients connect, or 0 for any free port
+     * @param maxGames    the maximal number of games played at the same time
+     * @param playerNames the names given to the players of each game
+     * @throws IllegalArgumentException if maxGames isn't positive or if a player has no name
+     * @throws UncheckedIOException     if the port can't be opened
+     */
+    public MatchServer(int port, int maxGames, Map<PlayerId, String> playerNames) {
+        this(port, maxGames, playerNames, Executors.newFixedThreadPool(maxGames));
+    }
+
+    /**
+     * Opens a server on the given port, playing its games on the given executor, for example the one of
+     * GameExecutors.newThreadPerTaskExecutor(). The executor is shut down with the server.
+     *
+     * @param port        the port on which the clients connect, or 0 for any free port
+     * @param maxGames    the maximal number of games played at the same time
+     * @param playerNames the names given to the players of each game
+     * @param games       the executor on which each game runs, from start to end
+     * @throws IllegalArgumentException if maxGames isn't positive or if a player has no name
+     * @throws UncheckedIOException     if the port can't be opened
+     */
+    public MatchServer(int port, int maxGames, Map<PlayerId, String> playerNames, ExecutorService games) {
+        this(port, maxGames, playerNames, games, null);
+    }
+
+    /**
+     * Opens a server on the given port, playing its games on the given executor and saving their states in the given
+     * snapshots, under ids increasing from the one following the largest id they have. The games the snapshots have
+     * from a previous run are ended, their players being gone; they must be loaded before to be resumed. The snapshots
+     * aren't closed with the server.
+     *
+     * @param port        the port on which the clients connect, or 0 for any free port
+     * @param maxGames    the maximal number of games played at the same time
+     * @param playerNames the names given to the players of each game
+     * @param games       the executor on which each game runs, from start to end
+     * @param snapshots   the snapshots in which the states of the games are saved, or null
+     * @throws IllegalArgumentException if maxGames isn't positive or if a player has no name
+     * @throws UncheckedIOException     if the port can't be opened
+     */
+    public MatchServer(int port, int maxGames, Map<PlayerId, String> playerNames, ExecutorService games, GameSnapshots snapshots) {
+        Preconditions.checkArgument(maxGames > 0 && playerNames.keySet().containsAll(PlayerId.ALL));
+        this.playerNames = Map.copyOf(playerNames);
+        this.games = games;
+        this.gameSlots = new Semaphore(maxGames);
+        this.snapshots = snapshots;
+        this.nextGameId = snapshots == null ? 0 : snapshots.nextGameId();
+        if (snapshots != null) snapshots.openedGameIds().forEach(snapshots::end);
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the port on which the server accepts the clients
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Opens the port on which the spectators connect. A spectator first receives a GAMES message with the ids of the
+     * games being played, then sends the id of the game it watches, followed by a new line, the games being numbered
+     * in the order in which they start; it then receives the RECEIVE_INFO
+     * messages of the game, and its public states as UPDATE_PUBLIC_STATE and UPDATE_PUBLIC_STATE_DELTA messages.
+     * Each message is encoded once for all the spectators of the game. A spectator falling too far behind misses the
+     * messages it hasn't received yet, and gets the current state instead. To be called before run.
+     *
+     * @param port the port on which the spectators connect, or 0 for any free port
+     * @return the port on which the spectators connect
+     * @throws UncheckedIOException if the port can't be opened
+     */
+    public int acceptSpectators(int port) {
+        try {
+            spectatorChannel = ServerSocketChannel.open();
+            spectatorChannel.bind(new InetSocketAddress(port), BACKLOG);
+            spectatorChannel.configureBlocking(false);
+            spectatorChannel.register(selector, SelectionKey.OP_ACCEPT);
+            return spectatorChannel.socket().getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Accepts the clients and exchanges their messages until the server is closed, on the calling thread
+     *
+     * @throws UncheckedIOException if the selector fails
+     */
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select();
+
+                SelectionKey pendingKey;
+                while ((pendingKey = pendingWrites.poll()) != null) {
+                    if (pendingKey.isValid()) pendingKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        if (key.channel() == serverChannel) accept();
+                        else acceptSpectator();
+                    } else if (key.attachment() instanceof Connection) {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) connection.read();
+                        if (key.isValid() && key.isWritable()) connection.write();
+                    } else {
+                        Watcher watcher = (Watcher) key.attachment();
+                        if (key.isReadable()) watcher.read();
+                        if (key.isValid() && key.isWritable()) watcher.write();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops the server: the thread running it returns, the clients are disconnected and the games are interrupted
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel socketChannel = serverChannel.accept();
+        if (socketChannel == null) return;
+
+        socketChannel.configureBlocking(false);
+        //the messages are small and often sent one after the other, they mustn't wait for an acknowledgment
+        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(socketChannel);
+        connection.key = socketChannel.register(selector, SelectionKey.OP_READ, connection);
+
+        waiting.add(connection);
+        if (waiting.size() == PlayerId.COUNT) {
+            startGame(List.copyOf(waiting));
+            waiting.clear();
+        }
+    }
+
+    private void acceptSpectator() throws IOException {
+        SocketChannel socketChannel = spectatorChannel.accept();
+        if (socketChannel == null) return;
+
+        socketChannel.configureBlocking(false);
+        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Watcher watcher = new Watcher(socketChannel);
+        watcher.key = socketChannel.register(selector, SelectionKey.OP_READ, watcher);
+        List<Long> gameIds = new ArrayList<>(broadcasts.keySet());
+        Collections.sort(gameIds);
+        watcher.enqueue(frame(MessageId.GAMES.name() + " " + Serdes.serListLong.serialize(gameIds)));
+        selector.wakeup();
+    }
+
+    private void startGame(List<Connection> connections) {
+        Map<PlayerId, Player> players = new EnumMap<>(PlayerId.class);
+        SharedEncodings encodings = new SharedEncodings();
+        for (int i = 0; i < PlayerId.COUNT; i++) {
+            players.put(PlayerId.ALL.get(i), new RemotePlayerProxy(connections.get(i), encodings));
+        }
+        long gameId = nextGameId++;
+        Broadcast broadcast = new Broadcast(encodings);
+        broadcasts.put(gameId, broadcast);
+
+        games.execute(() -> {
+            try {
+                gameSlots.acquire();
+            } catch (InterruptedException e) {
+                connections.forEach(Connection::close);
+                broadcasts.remove(gameId).end();
+                return;
+            }
+            try {
+                if (snapshots == null) {
+                    Game.play(players, playerNames, tickets, new Random(), broadcast);
+                } else {
+                    Game.play(players, playerNames, tickets, new Random(), snapshots.of(gameId), broadcast);
+                }
+            } catch (RuntimeException e) {
+                //a client left during the game, or the server was closed
+                if (!closed) e.printStackTrace();
+            } finally {
+                //a game whose clients are gone can't be resumed by the server either
+                if (snapshots != null) snapshots.end(gameId);
+                gameSlots.release();
+                connections.forEach(Connection::close);
+                broadcasts.remove(gameId).end();
+            }
+        });
+    }
+
+    private void shutdown() {
+        games.shutdownNow();
+        flusher.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) ((Connection) key.attachment()).drop();
+            else if (key.attachment() instanceof Watcher) ((Watcher) key.attachment()).drop();
+        }
+        try {
+            serverChannel.close();
+            if (spectatorChannel != null) spectatorChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //the channel of a client: its proxy sends and receives on the thread of the game, the selector does the rest
+    private final class Connection implements MessageChannel {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private final StringBuilder line = new StringBuilder();
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>(MAX_PENDING_ANSWERS);
+        //the messages sent but not flushed yet, guarded by the connection
+        private final StringBuilder unflushed = new StringBuilder();
+        private boolean flushScheduled;
+        private final Queue<ByteBuffer> toWrite = new ConcurrentLinkedQueue<>();
+        private volatile boolean closing;
+        private volatile long sentCount;
+        private volatile long writeCount;
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public synchronized void send(String message) {
+            unflushed.append(message).append('\n');
+            ++sentCount;
+            if (unflushed.length() >= BUFFER_SIZE) {
+                flush();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                flusher.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        //hands the messages sent to the selector, which writes them together
+        @Override
+        public synchronized void flush() {
+            flushScheduled = false;
+            if (unflushed.length() == 0) return;
+            toWrite.add(StandardCharsets.US_ASCII.encode(CharBuffer.wrap(unflushed)));
+            unflushed.setLength(0);
+            pendingWrites.add(key);
+            selector.wakeup();
+        }
+
+        @Override
+        public long sentCount() {
+            return sentCount;
+        }
+
+        @Override
+        public long writeCount() {
+            return writeCount;
+        }
+
+        @Override
+        public String receive() {
+            try {
+                String message = received.take();
+                if (message != GONE) return message;
+                //leaves the mark for the next call
+                received.offer(GONE);
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        //closes the connection once everything sent has been written
+        private void close() {
+            flush();
+            closing = true;
+            pendingWrites.add(key);
+            selector.wakeup();
+        }
+
+        private void read() {
+            int count;
+            try {
+                count = channel.read(input);
+            } catch (IOException e) {
+                count = -1;
+            }
+            if (count < 0) {
+                drop();
+                return;
+            }
+
+            //a client sending a line longer than any answer, or answering what hasn't been requested, is disconnected
+            input.flip();
+            while (input.hasRemaining()) {
+                char c = (char) input.get();
+                if (c == '\n') {
+                    if (!received.offer(line.toString())) {
+                        drop();
+                        return;
+                    }
+                    line.setLength(0);
+                } else if (line.length() < MAX_MESSAGE_LENGTH) {
+                    line.append(c);
+                } else {
+                    drop();
+                    return;
+                }
+            }
+            input.clear();
+        }
+
+        private void write() {
+            try {
+                while (!toWrite.isEmpty()) {
+                    //all the flushed messages in a single system call
+                    ByteBuffer[] buffers = toWrite.toArray(new ByteBuffer[0]);
+                    channel.write(buffers);
+                    ++writeCount;
+                    for (ByteBuffer buffer : buffers) {
+                        if (buffer.hasRemaining()) return;
+                        toWrite.poll();
+                    }
+                }
+            } catch (IOException e) {
+                drop();
+                return;
+            }
+
+            //a message sent meanwhile has put the connection back in pendingWrites
+            key.interestOps(SelectionKey.OP_READ);
+            if (closing) drop();
+        }
+
+        private void drop() {
+            waiting.remove(this);
+            //an answer not taken yet is abandoned with the client
+            received.clear();
+            received.offer(GONE);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //a message in a direct buffer which can't be changed, written as it is to all the spectators of a game
+    private static ByteBuffer frame(String message) {
+        byte[] bytes = (message + '\n').getBytes(StandardCharsets.US_ASCII);
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+    }
+
+    //the spectator of a game, which encodes each message once and gives it to all the watchers of the game; the
+    //messages are usually already encoded for the players, and taken from the encodings they share
+    private final class Broadcast implements Spectator {
+        private final SharedEncodings encodings;
+        private final List<Watcher> watchers = new ArrayList<>();
+        private PublicGameState state;
+        //the frame of the whole current state, built when a watcher needs it
+        private ByteBuffer stateFrame;
+        private boolean ended;
+
+        private Broadcast(SharedEncodings encodings) {
+            this.encodings = encodings;
+        }
+
+        @Override
+        public synchronized void receiveInfo(String info) {
+            if (!watchers.isEmpty()) fanOut(frame(encodings.infoMessage(info)));
+        }
+
+        @Override
+        public synchronized void updateState(PublicGameState newState) {
+            PublicGameState previous = state;
+            state = newState;
+            stateFrame = null;
+            if (watchers.isEmpty()) return;
+            if (previous != null && StateDeltas.canDescribe(previous, newState))
+                fanOut(frame(MessageId.UPDATE_PUBLIC_STATE_DELTA.name() + " " + encodings.publicGameStateDelta(previous, newState)));
+            else
+                fanOut(stateFrame());
+        }
+
+        //null before the first state
+        private ByteBuffer stateFrame() {
+            if (stateFrame == null && state != null)
+                stateFrame = frame(MessageId.UPDATE_PUBLIC_STATE.name() + " " + encodings.publicGameState(WireFormat.BINARY, state));
+            return stateFrame;
+        }
+
+        private void fanOut(ByteBuffer frame) {
+            for (Watcher watcher : watchers) watcher.enqueue(frame);
+            selector.wakeup();
+        }
+
+        //a watcher starts with the current state
+        private synchronized void add(Watcher watcher) {
+            if (ended) {
+                watcher.close();
+                return;
+            }
+            watchers.add(watcher);
+            ByteBuffer frame = stateFrame();
+            if (frame != null) {
+                watcher.enqueue(frame);
+                selector.wakeup();
+            }
+        }
+
+        private synchronized void remove(Watcher watcher) {
+            watchers.remove(watcher);
+        }
+
+        //the watchers are disconnected once they have received everything
+        private synchronized void end() {
+            ended = true;
+            watchers.forEach(Watcher::close);
+            watchers.clear();
+        }
+    }
+
+    //a spectator: the selector reads the id of the game it watches, then writes the frames of that game to it
+    private final class Watcher {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_ID_LENGTH + 1);
+        private final StringBuilder line = new StringBuilder();
+        //the frames not written yet, each one a view of its own on a shared frame, guarded by the watcher
+        private final Deque<ByteBuffer> frames = new ArrayDeque<>();
+        private Broadcast broadcast;
+        private volatile boolean closing;
+        private SelectionKey key;
+
+        private Watcher(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        //called with the lock of the broadcast, or before the watcher watches a game; a watcher having MAX_BACKLOG
+        //frames to write only keeps the one being written, then gets the current state
+        private synchronized void enqueue(ByteBuffer frame) {
+            if (frames.size() >= MAX_BACKLOG) {
+                ByteBuffer partlyWritten = frames.peekFirst().position() > 0 ? frames.peekFirst() : null;
+                frames.clear();
+                if (partlyWritten != null) frames.add(partlyWritten);
+                ByteBuffer stateFrame = broadcast.stateFrame();
+                if (stateFrame != null) frame = stateFrame;
+            }
+            if (frames.isEmpty()) pendingWrites.add(key);
+            frames.add(frame.duplicate());
+        }
+
+        private void close() {
+            closing = true;
+            pendingWrites.add(key);
+            selector.wakeup();
+        }
+
+        private void read() {
+            int count;
+            try {
+                count = channel.read(input);
+            } catch (IOException e) {
+                count = -1;
+            }
+            if (count < 0) {
+                drop();
+                return;
+            }
+
+            //what a spectator sends after the id of its game is ignored
+            input.flip();
+            while (broadcast == null && input.hasRemaining()) {
+                char c = (char) input.get();
+                if (c == '\n') {
+                    watch(line.toString().trim());
+                    break;
+                }
+                line.append(c);
+            }
+            input.clear();
+            if (broadcast == null && key.isValid() && line.length() > MAX_ID_LENGTH) drop();
+        }
+
+        //the watcher of an unknown game is disconnected
+        private void watch(String gameId) {
+            Broadcast game;
+            try {
+                game = broadcasts.get(Long.parseLong(gameId));
+            } catch (NumberFormatException e) {
+                game = null;
+            }
+            if (game == null) {
+                drop();
+                return;
+            }
+            broadcast = game;
+            game.add(this);
+        }
+
+        private void write() {
+            try {
+                if (writeFrames() && closing) drop();
+            } catch (IOException e) {
+                drop();
+            }
+        }
+
+        //true if all the frames have been written
+        private synchronized boolean writeFrames() throws IOException {
+            while (!frames.isEmpty()) {
+                //all the frames in a single system call
+                ByteBuffer[] buffers = frames.toArray(new ByteBuffer[0]);
+                channel.write(buffers);
+                for (ByteBuffer buffer : buffers) {
+                    if (buffer.hasRemaining()) return false;
+                    frames.poll();
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            return true;
+        }
+
+        private void drop() {
+            if (broadcast != null) broadcast.remove(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
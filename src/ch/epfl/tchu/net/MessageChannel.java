@@ -0,0 +1,56 @@
+package ch.epfl.tchu.net;
+
+import java.net.Socket;
+
+/**
+ * A channel through which a proxy exchanges its textual messages, one line each, with the client of a distant player.
+ * The messages sent are kept in a buffer, and written together when the proxy flushes them before waiting for an
+ * answer, when the buffer is full, or at the latest FLUSH_DELAY_MILLIS after the first of them
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public interface MessageChannel {
+
+    /**
+     * the longest time a message sent waits in the buffer, in milliseconds
+     */
+    int FLUSH_DELAY_MILLIS = 10;
+
+    /**
+     * sends the given message, without its line terminator, once the buffer is flushed
+     * @param message the message to send
+     */
+    void send(String message);
+
+    /**
+     * writes all the messages of the buffer to the client
+     */
+    void flush();
+
+    /**
+     * waits for the next message of the client
+     * @return the message received, without its line terminator, or null if the client is gone
+     */
+    String receive();
+
+    /**
+     * @return the number of messages sent so far
+     */
+    long sentCount();
+
+    /**
+     * @return the number of writes to the network so far: each one is a system call and, the messages being sent
+     * without delay, usually a single packet
+     */
+    long writeCount();
+
+    /**
+     * creates a channel exchanging its messages through the streams of the given socket, blocking the caller
+     * @param socket the socket connected to the client
+     * @return the channel
+     * @throws java.io.UncheckedIOException if the streams of the socket can't be opened
+     */
+    static MessageChannel of(Socket socket) {
+        return new StreamMessageChannel(socket);
+    }
+}
@@ -1,7 +1,7 @@
 package ch.epfl.tchu.net;
 
 /**
- * The enumeration of the types of messages the server can send to the client
+ * The enumeration of the types of messages the server can send to the client and to the spectators
  * @author Mamoun Chami (325917)
  * @author Ismael Berrada (327482)
  */
@@ -9,11 +9,17 @@ public enum MessageId {
     INIT_PLAYERS,
     RECEIVE_INFO,
     UPDATE_STATE,
+    UPDATE_STATE_DELTA,
     SET_INITIAL_TICKETS,
     CHOOSE_INITIAL_TICKETS,
     NEXT_TURN, CHOOSE_TICKETS,
     DRAW_SLOT,
     ROUTE,
     CARDS,
-    CHOOSE_ADDITIONAL_CARDS
+    CHOOSE_ADDITIONAL_CARDS,
+    //the public state of the game in the binary format, and its changes from the previous one, sent to the spectators
+    UPDATE_PUBLIC_STATE,
+    UPDATE_PUBLIC_STATE_DELTA,
+    //the ids of the games being played, sent to a spectator when it connects
+    GAMES
 }
@@ -6,6 +6,7 @@ import ch.epfl.tchu.game.*;
 import java.io.*;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -18,6 +19,10 @@ import java.util.regex.Pattern;
 public final class RemotePlayerClient {
     private final Player player;
     private final Socket socket;
+    private WireFormat format = WireFormat.TEXT;
+    private PlayerId ownId;
+    private PublicGameState lastState;
+    private PlayerState lastOwnState;
 
     /**
      * The constructor of the class
@@ -40,13 +45,18 @@ public final class RemotePlayerClient {
 
         switch (message) {
             case INIT_PLAYERS:
-                PlayerId ownId = Serdes.serPlayerId.deserialize(strings[1]);
+                ownId = Serdes.serPlayerId.deserialize(strings[1]);
                 String[] names = strings[2].split(Pattern.quote(","), -1);
                 for (int i = 0; i < names.length; i++) {
                     names[i] = Serdes.serString.deserialize(names[i]);
                 }
                 Map<PlayerId, String> playerNames = Map.of(PlayerId.PLAYER_1, names[0], PlayerId.PLAYER_2, names[1]);
                 player.initPlayers(ownId, playerNames);
+                //a server offering formats expects the most compact one it offers in return
+                if (strings.length > 3) {
+                    format = Collections.max(Serdes.serListWireFormat.deserialize(strings[3]));
+                    s = Serdes.serWireFormat.serialize(format);
+                }
                 break;
 
             case RECEIVE_INFO:
@@ -55,9 +65,16 @@ public final class RemotePlayerClient {
                 break;
 
             case UPDATE_STATE:
-                PublicGameState newState = Serdes.serPublicGameState.deserialize(strings[1]);
-                PlayerState ownState = Serdes.serPlayerState.deserialize(strings[2]);
-                player.updateState(newState, ownState);
+                PublicGameState newState = format.publicGameStateSerde().deserialize(strings[1]);
+                PlayerState ownState = format.playerStateSerde().deserialize(strings[2]);
+                updateState(newState, ownState);
+                break;
+
+            case UPDATE_STATE_DELTA:
+                PublicGameState changedState = StateDeltas.deserializePublicGameState(lastState, strings[1]);
+                PlayerState changedOwnState = StateDeltas.deserializePlayerState(lastOwnState,
+                        changedState.playerState(ownId).routes(), strings[2]);
+                updateState(changedState, changedOwnState);
                 break;
 
             case SET_INITIAL_TICKETS:
@@ -104,6 +121,13 @@ public final class RemotePlayerClient {
 
     }
 
+    //the deltas received afterwards are applied to this state
+    private void updateState(PublicGameState newState, PlayerState ownState) {
+        lastState = newState;
+        lastOwnState = ownState;
+        player.updateState(newState, ownState);
+    }
+
     /**
      * This method does a cycle which waits for a message from the server, separates it with a delimiter, determines the type of message and
      * calls tbe corresponding method while sending back what the method returns if it does return something
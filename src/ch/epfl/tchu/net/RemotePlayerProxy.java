@@ -3,11 +3,10 @@ package ch.epfl.tchu.net;
 import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.game.*;
 
-import java.io.*;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * this class represents the proxy of a distant player and so acts as a player
@@ -16,39 +15,72 @@ import java.util.Map;
  */
 public final class RemotePlayerProxy implements Player {
 
-    private final BufferedWriter bw;
-    private final BufferedReader br;
+    private final MessageChannel channel;
+    private final SharedEncodings encodings;
+    private WireFormat format = WireFormat.TEXT;
+    private PublicGameState lastState;
+    private PlayerState lastOwnState;
+    private int deltasSinceSnapshot;
+    private int turnCount;
 
     /**
      * The contructor of the proxy
      * @param socket what the proxy uses to communicate with the client by exchanging textual messages
      */
     public RemotePlayerProxy(Socket socket) {
-        try {
-            bw = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
-            br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        this(MessageChannel.of(socket));
     }
 
-    private String readMessage() {
-        try {
-            return br.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+    /**
+     * Creates a proxy exchanging its messages through the given channel, for example a non-blocking one of a MatchServer
+     * @param channel what the proxy uses to communicate with the client
+     */
+    public RemotePlayerProxy(MessageChannel channel) {
+        this(channel, new SharedEncodings());
+    }
+
+    /**
+     * Creates a proxy exchanging its messages through the given channel, sharing the encodings of what is sent to
+     * every player with the proxies of the other players of the same game
+     * @param channel   what the proxy uses to communicate with the client
+     * @param encodings the encodings shared by the proxies of the game
+     */
+    public RemotePlayerProxy(MessageChannel channel, SharedEncodings encodings) {
+        this.channel = channel;
+        this.encodings = Objects.requireNonNull(encodings);
+    }
+
+    /**
+     * @return the number of turns the distant player has been asked to play so far
+     */
+    public int turnCount() {
+        return turnCount;
     }
 
+    /**
+     * @return the number of messages sent to the client so far
+     */
+    public long sentCount() {
+        return channel.sentCount();
+    }
+
+    /**
+     * @return the number of writes to the network so far, see MessageChannel.writeCount
+     */
+    public long writeCount() {
+        return channel.writeCount();
+    }
+
+    //sends a request and waits for its answer, the messages sent before it leaving with it
+    private String request(String chain) {
+        channel.send(chain);
+        channel.flush();
+        return channel.receive();
+    }
+
+    //sends a message which has no answer, kept with the next ones until a request
     private void sendMessage(String chain){
-        try {
-            bw.write(chain);
-            bw.write("\n");
-            bw.flush();
-        } catch (IOException e){
-            e.printStackTrace();
-        }
+        channel.send(chain);
     }
 
 
@@ -58,20 +90,35 @@ public final class RemotePlayerProxy implements Player {
         String ownIdSerialized = Serdes.serPlayerId.serialize(ownId);
         String playerNamesSerialized = Serdes.serString.serialize(playerNames.get(PlayerId.PLAYER_1)) + ","
                 + Serdes.serString.serialize(playerNames.get(PlayerId.PLAYER_2));
-        sendMessage(String.join(" ", List.of(message, ownIdSerialized, playerNamesSerialized)));
+        String formatsSerialized = Serdes.serListWireFormat.serialize(WireFormat.ALL);
+        String answer = request(String.join(" ", List.of(message, ownIdSerialized, playerNamesSerialized, formatsSerialized)));
+        //the client answers with the format it chose among the ones offered
+        format = Serdes.serWireFormat.deserialize(answer);
     }
 
     @Override
     public void receiveInfo(String info) {
-        sendMessage(MessageId.RECEIVE_INFO.name() + " " + Serdes.serString.serialize(info));
+        sendMessage(encodings.infoMessage(info));
     }
 
     @Override
     public void updateState(PublicGameState newState, PlayerState ownState) {
-        String messageSerialized = MessageId.UPDATE_STATE.name();
-        String newStateSerialized = Serdes.serPublicGameState.serialize(newState);
-        String ownStateSerialized = Serdes.serPlayerState.serialize(ownState);
-        sendMessage(String.join(" ", List.of(messageSerialized, newStateSerialized, ownStateSerialized)));
+        if (format == WireFormat.DELTA && lastState != null && deltasSinceSnapshot < StateDeltas.SNAPSHOT_INTERVAL
+                && StateDeltas.canDescribe(lastState, newState)) {
+            String messageSerialized = MessageId.UPDATE_STATE_DELTA.name();
+            String newStateSerialized = encodings.publicGameStateDelta(lastState, newState);
+            String ownStateSerialized = StateDeltas.serializePlayerState(lastOwnState, ownState);
+            sendMessage(String.join(" ", List.of(messageSerialized, newStateSerialized, ownStateSerialized)));
+            ++deltasSinceSnapshot;
+        } else {
+            String messageSerialized = MessageId.UPDATE_STATE.name();
+            String newStateSerialized = encodings.publicGameState(format, newState);
+            String ownStateSerialized = format.playerStateSerde().serialize(ownState);
+            sendMessage(String.join(" ", List.of(messageSerialized, newStateSerialized, ownStateSerialized)));
+            deltasSinceSnapshot = 0;
+        }
+        lastState = newState;
+        lastOwnState = ownState;
     }
 
     @Override
@@ -83,47 +130,41 @@ public final class RemotePlayerProxy implements Player {
 
     @Override
     public SortedBag<Ticket> chooseInitialTickets() {
-        sendMessage(MessageId.CHOOSE_INITIAL_TICKETS.name());
-        return Serdes.serBagTicket.deserialize(readMessage());
+        return Serdes.serBagTicket.deserialize(request(MessageId.CHOOSE_INITIAL_TICKETS.name()));
     }
 
     @Override
     public TurnKind nextTurn() {
-        sendMessage(MessageId.NEXT_TURN.name());
-        return Serdes.serTurnKind.deserialize(readMessage());
+        ++turnCount;
+        return Serdes.serTurnKind.deserialize(request(MessageId.NEXT_TURN.name()));
     }
 
     @Override
     public SortedBag<Ticket> chooseTickets(SortedBag<Ticket> options) {
         String messageSerialized = MessageId.CHOOSE_TICKETS.name();
         String optionsSerialized = Serdes.serBagTicket.serialize(options);
-        sendMessage(String.join(" ", List.of(messageSerialized, optionsSerialized)));
-        return Serdes.serBagTicket.deserialize(readMessage());
+        return Serdes.serBagTicket.deserialize(request(String.join(" ", List.of(messageSerialized, optionsSerialized))));
     }
 
     @Override
     public int drawSlot() {
-        sendMessage(MessageId.DRAW_SLOT.name());
-        return Serdes.serInt.deserialize(readMessage());
+        return Serdes.serInt.deserialize(request(MessageId.DRAW_SLOT.name()));
     }
 
     @Override
     public Route claimedRoute() {
-        sendMessage(MessageId.ROUTE.name());
-        return Serdes.serRoute.deserialize(readMessage());
+        return Serdes.serRoute.deserialize(request(MessageId.ROUTE.name()));
     }
 
     @Override
     public SortedBag<Card> initialClaimCards() {
-        sendMessage(MessageId.CARDS.name());
-        return Serdes.serBagCard.deserialize(readMessage());
+        return Serdes.serBagCard.deserialize(request(MessageId.CARDS.name()));
     }
 
     @Override
     public SortedBag<Card> chooseAdditionalCards(List<SortedBag<Card>> options) {
         String messageSerialized = MessageId.CHOOSE_ADDITIONAL_CARDS.name();
         String optionsSerialized = Serdes.serListBagCard.serialize(options);
-        sendMessage(String.join(" ", List.of(messageSerialized, optionsSerialized)));
-        return Serdes.serBagCard.deserialize(readMessage());
+        return Serdes.serBagCard.deserialize(request(String.join(" ", List.of(messageSerialized, optionsSerialized))));
     }
 }
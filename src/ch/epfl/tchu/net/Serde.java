@@ -4,7 +4,9 @@ import ch.epfl.tchu.Preconditions;
 import ch.epfl.tchu.SortedBag;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
@@ -59,7 +61,14 @@ public interface Serde <T> {
      */
     static <T> Serde<T> oneOf (List<T> values){
         Preconditions.checkArgument(!values.isEmpty());
-        return of(t -> Integer.toString(values.indexOf(t)), chain -> values.get(Integer.parseInt(chain)));
+        List<T> copy = List.copyOf(values);
+        //the values of the enums and of ChMap are only equal to themselves, so they are looked up by identity,
+        //a value appearing twice keeping its first index as List.indexOf did
+        Map<T, String> indices = new IdentityHashMap<>();
+        for (int i = 0; i < copy.size(); i++) {
+            indices.putIfAbsent(copy.get(i), Integer.toString(i));
+        }
+        return of(t -> indices.getOrDefault(t, "-1"), chain -> copy.get(Integer.parseInt(chain)));
     }
 
     /**
@@ -21,6 +21,11 @@ public final class Serdes {
      */
     public static final Serde<Integer> serInt = Serde.of(i -> i.toString(), Integer::parseInt);
 
+    /**
+     * Serialization and deserialization of a Long
+     */
+    public static final Serde<Long> serLong = Serde.of(l -> l.toString(), Long::parseLong);
+
     /**
      * Serialization and deserialization of a String
      */
@@ -52,6 +57,11 @@ public final class Serdes {
      */
     public static final Serde<Ticket> serTicket = Serde.oneOf(ChMap.tickets());
 
+    /**
+     * Serialization and deserialization of a WireFormat
+     */
+    public static final Serde<WireFormat> serWireFormat = Serde.oneOf(WireFormat.ALL);
+
     /**
      * Serialization and deserialization of a List of String
      */
@@ -67,6 +77,16 @@ public final class Serdes {
      */
     public static final Serde<List<Route>> serListRoute = Serde.listOf(serRoute, ",");
 
+    /**
+     * Serialization and deserialization of a List of WireFormat
+     */
+    public static final Serde<List<WireFormat>> serListWireFormat = Serde.listOf(serWireFormat, ",");
+
+    /**
+     * Serialization and deserialization of a List of Long
+     */
+    public static final Serde<List<Long>> serListLong = Serde.listOf(serLong, ",");
+
     /**
      * Serialization and deserialization of a Bag of Card
      */
@@ -159,4 +179,16 @@ public final class Serdes {
             }
     );
 
+    /**
+     * Serialization and deserialization of a PublicGameState in the binary form of BinarySerdes, in Base64
+     */
+    public static final Serde<PublicGameState> serBinaryPublicGameState =
+            BinarySerde.base64(BinarySerdes.publicGameState, BinarySerdes.MAX_SIZE);
+
+    /**
+     * Serialization and deserialization of a PlayerState in the binary form of BinarySerdes, in Base64
+     */
+    public static final Serde<PlayerState> serBinaryPlayerState =
+            BinarySerde.base64(BinarySerdes.playerState, BinarySerdes.MAX_SIZE);
+
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.game.PublicGameState;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The encodings of what a game sends to all its players: the proxies of the players of a game share them, so that
+ * the public state and the infos are serialized once for all of them, only the private state of each player being
+ * serialized by its own proxy. The game gives the same states to all its players, so they are recognized by
+ * identity, and only the encodings of the last ones are kept.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class SharedEncodings {
+
+    private PublicGameState state;
+    private final Map<WireFormat, String> stateEncodings = new EnumMap<>(WireFormat.class);
+    private PublicGameState deltaPrevious;
+    private PublicGameState deltaState;
+    private String delta;
+    private String info;
+    private String infoMessage;
+
+    /**
+     * @param format   the format of the encoding
+     * @param newState a public state of the game
+     * @return the state serialized in the given format
+     */
+    synchronized String publicGameState(WireFormat format, PublicGameState newState) {
+        if (newState != state) {
+            state = newState;
+            stateEncodings.clear();
+        }
+        return stateEncodings.computeIfAbsent(format, f -> f.publicGameStateSerde().serialize(newState));
+    }
+
+    /**
+     * @param previous the state the client already has
+     * @param newState the new state, which StateDeltas can describe from the previous one
+     * @return the delta between the two states
+     */
+    synchronized String publicGameStateDelta(PublicGameState previous, PublicGameState newState) {
+        if (previous != deltaPrevious || newState != deltaState) {
+            deltaPrevious = previous;
+            deltaState = newState;
+            delta = StateDeltas.serializePublicGameState(previous, newState);
+        }
+        return delta;
+    }
+
+    /**
+     * @param newInfo an info given to the players
+     * @return the whole RECEIVE_INFO message giving it
+     */
+    synchronized String infoMessage(String newInfo) {
+        if (!newInfo.equals(info)) {
+            info = newInfo;
+            infoMessage = MessageId.RECEIVE_INFO.name() + " " + Serdes.serString.serialize(newInfo);
+        }
+        return infoMessage;
+    }
+}
@@ -0,0 +1,215 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * The class writing the changes between two successive states of the game sent to a player, and applying them to
+ * the previous state to rebuild the new one. A delta starts with a varint whose bits tell which fields follow.
+ * The routes of the players can only be added to.
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class StateDeltas {
+
+    private StateDeltas() {
+    }
+
+    /**
+     * The number of deltas sent in a row before a full state is sent again
+     */
+    public static final int SNAPSHOT_INTERVAL = 16;
+
+    private static final int TICKETS_COUNT = 1;
+    private static final int FACE_UP_CARDS = 1 << 1;
+    private static final int DECK_SIZE = 1 << 2;
+    private static final int DISCARDS_SIZE = 1 << 3;
+    private static final int PLAYERS = 1 << 4;
+    //followed by one bit per player for its counts, then one bit per player for its new routes
+    private static final int PLAYER_COUNTS = 1 << 5;
+    private static final int NEW_ROUTES = PLAYER_COUNTS << PlayerId.COUNT;
+
+    private static final int OWN_TICKETS = 1;
+    private static final int OWN_CARDS = 1 << 1;
+
+    /**
+     * Checks if the new public state can be described by its changes from the previous one
+     * @param previous the previous state
+     * @param next the new state
+     * @return true iff each player still has, in the new state, the routes he had in the previous one
+     */
+    public static boolean canDescribe(PublicGameState previous, PublicGameState next) {
+        for (PlayerId playerId : PlayerId.ALL) {
+            PublicPlayerState nextPlayer = next.playerState(playerId);
+            for (Route route : previous.playerState(playerId).routes()) {
+                if (!nextPlayer.hasRoute(route)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the changes from the previous public state to the new one, which must be describable (see canDescribe)
+     * @param previous the previous state
+     * @param next the new state
+     * @return the changes in Base64
+     */
+    public static String serializePublicGameState(PublicGameState previous, PublicGameState next) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinarySerdes.MAX_SIZE);
+        writePublicGameState(previous, next, buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    /**
+     * Rebuilds the new public state from the previous one and the serialized changes
+     * @param previous the previous state
+     * @param chain the changes serialized by serializePublicGameState
+     * @return the new state
+     */
+    public static PublicGameState deserializePublicGameState(PublicGameState previous, String chain) {
+        return readPublicGameState(previous, ByteBuffer.wrap(Base64.getDecoder().decode(chain)));
+    }
+
+    /**
+     * Serializes the changes from the previous state of the player to the new one; its routes are not part of it,
+     * as they are the ones of its public state
+     * @param previous the previous state of the player
+     * @param next the new state of the player
+     * @return the changes in Base64
+     */
+    public static String serializePlayerState(PlayerState previous, PlayerState next) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinarySerdes.MAX_SIZE);
+        writePlayerState(previous, next, buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    /**
+     * Rebuilds the new state of a player from the previous one and the serialized changes
+     * @param previous the previous state of the player
+     * @param routes the routes of the player, taken from the new public state
+     * @param chain the changes serialized by serializePlayerState
+     * @return the new state of the player
+     */
+    public static PlayerState deserializePlayerState(PlayerState previous, List<Route> routes, String chain) {
+        return readPlayerState(previous, routes, ByteBuffer.wrap(Base64.getDecoder().decode(chain)));
+    }
+
+    private static void writePublicGameState(PublicGameState previous, PublicGameState next, ByteBuffer buffer) {
+        PublicCardState previousCards = previous.cardState();
+        PublicCardState nextCards = next.cardState();
+        int faceUpMask = 0;
+        for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+            if (previousCards.faceUpCard(slot) != nextCards.faceUpCard(slot)) faceUpMask |= 1 << slot;
+        }
+
+        int flags = 0;
+        if (previous.ticketsCount() != next.ticketsCount()) flags |= TICKETS_COUNT;
+        if (faceUpMask != 0) flags |= FACE_UP_CARDS;
+        if (previousCards.deckSize() != nextCards.deckSize()) flags |= DECK_SIZE;
+        if (previousCards.discardsSize() != nextCards.discardsSize()) flags |= DISCARDS_SIZE;
+        if (previous.currentPlayerId() != next.currentPlayerId() || previous.lastPlayer() != next.lastPlayer()) flags |= PLAYERS;
+        for (PlayerId playerId : PlayerId.ALL) {
+            PublicPlayerState previousPlayer = previous.playerState(playerId);
+            PublicPlayerState nextPlayer = next.playerState(playerId);
+            if (previousPlayer.ticketCount() != nextPlayer.ticketCount() || previousPlayer.cardCount() != nextPlayer.cardCount())
+                flags |= PLAYER_COUNTS << playerId.ordinal();
+            if (previousPlayer.routeCount() != nextPlayer.routeCount())
+                flags |= NEW_ROUTES << playerId.ordinal();
+        }
+
+        BinarySerde.writeVarInt(flags, buffer);
+        if ((flags & TICKETS_COUNT) != 0) BinarySerde.writeVarInt(next.ticketsCount(), buffer);
+        if ((flags & FACE_UP_CARDS) != 0) {
+            buffer.put((byte) faceUpMask);
+            for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+                if ((faceUpMask & 1 << slot) != 0) buffer.put((byte) nextCards.faceUpCard(slot).ordinal());
+            }
+        }
+        if ((flags & DECK_SIZE) != 0) BinarySerde.writeVarInt(nextCards.deckSize(), buffer);
+        if ((flags & DISCARDS_SIZE) != 0) BinarySerde.writeVarInt(nextCards.discardsSize(), buffer);
+        if ((flags & PLAYERS) != 0) {
+            buffer.put((byte) next.currentPlayerId().ordinal());
+            buffer.put((byte) (next.lastPlayer() != null ? next.lastPlayer().ordinal() + 1 : 0));
+        }
+        for (PlayerId playerId : PlayerId.ALL) {
+            PublicPlayerState nextPlayer = next.playerState(playerId);
+            if ((flags & PLAYER_COUNTS << playerId.ordinal()) != 0) {
+                BinarySerde.writeVarInt(nextPlayer.ticketCount(), buffer);
+                BinarySerde.writeVarInt(nextPlayer.cardCount(), buffer);
+            }
+            if ((flags & NEW_ROUTES << playerId.ordinal()) != 0) {
+                PublicPlayerState previousPlayer = previous.playerState(playerId);
+                BinarySerde.writeVarInt(nextPlayer.routeCount() - previousPlayer.routeCount(), buffer);
+                for (Route route : nextPlayer.routes()) {
+                    if (!previousPlayer.hasRoute(route)) BinarySerde.writeVarInt(BinarySerdes.routeIndex(route), buffer);
+                }
+            }
+        }
+    }
+
+    private static PublicGameState readPublicGameState(PublicGameState previous, ByteBuffer buffer) {
+        int flags = BinarySerde.readVarInt(buffer);
+        PublicCardState previousCards = previous.cardState();
+
+        int ticketsCount = (flags & TICKETS_COUNT) != 0 ? BinarySerde.readVarInt(buffer) : previous.ticketsCount();
+        List<Card> faceUpCards = previousCards.faceUpCards();
+        if ((flags & FACE_UP_CARDS) != 0) {
+            faceUpCards = new ArrayList<>(faceUpCards);
+            int faceUpMask = buffer.get();
+            for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+                if ((faceUpMask & 1 << slot) != 0) faceUpCards.set(slot, Card.ALL.get(buffer.get()));
+            }
+        }
+        int deckSize = (flags & DECK_SIZE) != 0 ? BinarySerde.readVarInt(buffer) : previousCards.deckSize();
+        int discardsSize = (flags & DISCARDS_SIZE) != 0 ? BinarySerde.readVarInt(buffer) : previousCards.discardsSize();
+        PublicCardState cardState = (flags & (FACE_UP_CARDS | DECK_SIZE | DISCARDS_SIZE)) != 0
+                ? new PublicCardState(faceUpCards, deckSize, discardsSize)
+                : previousCards;
+
+        PlayerId currentPlayerId = previous.currentPlayerId();
+        PlayerId lastPlayer = previous.lastPlayer();
+        if ((flags & PLAYERS) != 0) {
+            currentPlayerId = PlayerId.ALL.get(buffer.get());
+            int last = buffer.get();
+            lastPlayer = last != 0 ? PlayerId.ALL.get(last - 1) : null;
+        }
+
+        Map<PlayerId, PublicPlayerState> playerStates = new EnumMap<>(PlayerId.class);
+        for (PlayerId playerId : PlayerId.ALL) {
+            PublicPlayerState previousPlayer = previous.playerState(playerId);
+            boolean countsChanged = (flags & PLAYER_COUNTS << playerId.ordinal()) != 0;
+            boolean routesChanged = (flags & NEW_ROUTES << playerId.ordinal()) != 0;
+            int ticketCount = countsChanged ? BinarySerde.readVarInt(buffer) : previousPlayer.ticketCount();
+            int cardCount = countsChanged ? BinarySerde.readVarInt(buffer) : previousPlayer.cardCount();
+            List<Route> routes = previousPlayer.routes();
+            if (routesChanged) {
+                routes = new ArrayList<>(routes);
+                int newRoutes = BinarySerde.readVarInt(buffer);
+                for (int i = 0; i < newRoutes; i++) routes.add(BinarySerdes.route(BinarySerde.readVarInt(buffer)));
+            }
+            playerStates.put(playerId, countsChanged || routesChanged
+                    ? new PublicPlayerState(ticketCount, cardCount, routes)
+                    : previousPlayer);
+        }
+        return new PublicGameState(ticketsCount, cardState, currentPlayerId, playerStates, lastPlayer);
+    }
+
+    private static void writePlayerState(PlayerState previous, PlayerState next, ByteBuffer buffer) {
+        int flags = 0;
+        if (!previous.tickets().equals(next.tickets())) flags |= OWN_TICKETS;
+        if (!previous.cards().equals(next.cards())) flags |= OWN_CARDS;
+        BinarySerde.writeVarInt(flags, buffer);
+        if ((flags & OWN_TICKETS) != 0) BinarySerdes.tickets.write(next.tickets(), buffer);
+        if ((flags & OWN_CARDS) != 0) BinarySerdes.cards.write(next.cards(), buffer);
+    }
+
+    private static PlayerState readPlayerState(PlayerState previous, List<Route> routes, ByteBuffer buffer) {
+        int flags = BinarySerde.readVarInt(buffer);
+        SortedBag<Ticket> tickets = (flags & OWN_TICKETS) != 0 ? BinarySerdes.tickets.read(buffer) : previous.tickets();
+        SortedBag<Card> cards = (flags & OWN_CARDS) != 0 ? BinarySerdes.cards.read(buffer) : previous.cards();
+        return new PlayerState(tickets, cards, routes);
+    }
+}
@@ -0,0 +1,110 @@
+package ch.epfl.tchu.net;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The channel of MessageChannel.of, exchanging the messages through the blocking streams of a socket
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+final class StreamMessageChannel implements MessageChannel {
+
+    //flushes the messages no request has flushed, e.g. the last ones of a game
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "message flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CountingOutputStream output;
+    private final BufferedWriter bw;
+    private final BufferedReader br;
+    private volatile long sentCount;
+    private boolean flushScheduled;
+
+    /**
+     * @param socket the socket connected to the client
+     * @throws UncheckedIOException if the streams of the socket can't be opened
+     */
+    StreamMessageChannel(Socket socket) {
+        try {
+            output = new CountingOutputStream(socket.getOutputStream());
+            bw = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII));
+            br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void send(String message) {
+        try {
+            //a full buffer is written right away by the writer
+            bw.write(message);
+            bw.write("\n");
+            ++sentCount;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            FLUSHER.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        flushScheduled = false;
+        try {
+            bw.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String receive() {
+        try {
+            return br.readLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public long sentCount() {
+        return sentCount;
+    }
+
+    @Override
+    public long writeCount() {
+        return output.writeCount;
+    }
+
+    //counts the writes to the stream of the socket, the writers above it only writing whole buffers
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private volatile long writeCount;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ++writeCount;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ++writeCount;
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.game.PlayerState;
+import ch.epfl.tchu.game.PublicGameState;
+
+import java.util.List;
+
+/**
+ * The formats in which the states of the game can be sent, agreed on by the server and the client at INIT_PLAYERS
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public enum WireFormat {
+    TEXT,
+    BINARY,
+    //binary states, most of them sent as their changes from the previous one (see StateDeltas)
+    DELTA;
+
+    /**
+     * The list of all the formats, from the least to the most compact
+     */
+    public static final List<WireFormat> ALL = List.of(WireFormat.values());
+
+    /**
+     * @return the Serde of the public states of the game in this format
+     */
+    public Serde<PublicGameState> publicGameStateSerde() {
+        return this == TEXT ? Serdes.serPublicGameState : Serdes.serBinaryPublicGameState;
+    }
+
+    /**
+     * @return the Serde of the states of the players in this format
+     */
+    public Serde<PlayerState> playerStateSerde() {
+        return this == TEXT ? Serdes.serPlayerState : Serdes.serBinaryPlayerState;
+    }
+}
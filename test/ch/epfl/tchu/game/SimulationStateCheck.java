@@ -0,0 +1,188 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.SortedBag;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a SimulationState plays exactly like a GameState: from seeded random games, it applies the same random
+ * transitions to both, sometimes undoing them back to a mark, and compares the hands, the deck, the discards, the face
+ * up cards, the tickets, the claimed routes and the final points after each one.
+ * The arguments are the number of games and the seed, 300 and 0 by default; it throws an AssertionError naming the
+ * game and the transition at the first difference.
+ *
+ * @author Mamoun Chami (325917)
+ * @author Ismael Berrada (327482)
+ */
+public final class SimulationStateCheck {
+
+    private static final int TRANSITIONS_PER_GAME = 400;
+    //the kinds of transitions, drawn uniformly, claims and draws of cards being the most frequent
+    private static final int MARK = 0;
+    private static final int UNDO = 1;
+    private static final int CLAIM_ROUTE = 2;
+    private static final int DRAW_CARD = 5;
+    private static final int DRAW_TICKETS = 8;
+    private static final int DRAW_TUNNEL_CARD = 9;
+    private static final int NEXT_TURN = 10;
+    private static final int KIND_COUNT = 11;
+
+    private SimulationStateCheck() {
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        Random rng = new Random(args.length > 1 ? Long.parseLong(args[1]) : 0);
+
+        int transitions = 0;
+        int undos = 0;
+        for (int game = 0; game < games; game++) {
+            GameState gameState = GameState.initial(SortedBag.of(ChMap.tickets()), rng);
+            for (PlayerId playerId : PlayerId.ALL) {
+                gameState = gameState.withInitiallyChosenTickets(playerId, gameState.topTickets(Constants.INITIAL_TICKETS_COUNT))
+                        .withoutTopTickets(Constants.INITIAL_TICKETS_COUNT);
+            }
+            SimulationState simulation = SimulationState.of(gameState);
+            Deque<Integer> marks = new ArrayDeque<>();
+            Deque<GameState> markedStates = new ArrayDeque<>();
+
+            for (int i = 0; i < TRANSITIONS_PER_GAME; i++) {
+                int kind = rng.nextInt(KIND_COUNT);
+                if (kind == MARK) {
+                    marks.push(simulation.mark());
+                    markedStates.push(gameState);
+                } else if (kind == UNDO) {
+                    if (marks.isEmpty()) continue;
+                    simulation.undo(marks.pop());
+                    gameState = markedStates.pop();
+                    undos++;
+                } else {
+                    gameState = transition(kind, gameState, simulation, rng);
+                    transitions++;
+                }
+                compare(gameState, simulation, "game " + game + ", transition " + i + " of kind " + kind);
+            }
+            while (!marks.isEmpty()) {
+                simulation.undo(marks.pop());
+                gameState = markedStates.pop();
+                undos++;
+                compare(gameState, simulation, "game " + game + ", final undo");
+            }
+        }
+        System.out.printf("ok: %d games, %d transitions, %d undos%n", games, transitions, undos);
+    }
+
+    //applies the same random transition to both states, returns the new game state
+    private static GameState transition(int kind, GameState gameState, SimulationState simulation, Random rng) {
+        if (kind >= CLAIM_ROUTE && kind < DRAW_CARD) {
+            List<Route> routes = new ArrayList<>();
+            for (Route route : ChMap.routes()) {
+                if (!gameState.isRouteOrTwinClaimed(route) && gameState.currentPlayerState().canClaimRoute(route))
+                    routes.add(route);
+            }
+            if (routes.isEmpty()) return gameState;
+            Route route = routes.get(rng.nextInt(routes.size()));
+            List<SortedBag<Card>> options = gameState.currentPlayerState().possibleClaimCards(route);
+            SortedBag<Card> cards = options.get(rng.nextInt(options.size()));
+            check(simulation.hasCards(cards), "cards of the claim");
+            simulation.claimRoute(route, cards);
+            return gameState.withClaimedRoute(route, cards);
+        }
+        if (kind >= DRAW_CARD && kind < DRAW_TICKETS) {
+            //both decks must be shuffled the same way
+            long seed = rng.nextLong();
+            gameState = gameState.withCardsDeckRecreatedIfNeeded(new Random(seed));
+            simulation.recreateDeckIfNeeded(new Random(seed));
+            if (gameState.cardState().isDeckEmpty()) return gameState;
+            int slot = rng.nextInt(Constants.FACE_UP_CARDS_COUNT + 1) - 1;
+            if (slot == Constants.DECK_SLOT) simulation.drawBlindCard();
+            else simulation.drawFaceUpCard(slot);
+            return GameRules.withDrawnCard(gameState, slot);
+        }
+        switch (kind) {
+            case DRAW_TICKETS:
+                if (gameState.ticketsCount() < Constants.IN_GAME_TICKETS_COUNT) return gameState;
+                List<Ticket> drawnTickets = gameState.ticketDeck().toList().subList(0, Constants.IN_GAME_TICKETS_COUNT);
+                int keptMask = 1 + rng.nextInt((1 << Constants.IN_GAME_TICKETS_COUNT) - 1);
+                SortedBag.Builder<Ticket> keptTickets = new SortedBag.Builder<>();
+                for (int i = 0; i < Constants.IN_GAME_TICKETS_COUNT; i++) {
+                    check(simulation.topTicket(i) == drawnTickets.get(i), "drawn tickets");
+                    if ((keptMask & 1 << i) != 0) keptTickets.add(drawnTickets.get(i));
+                }
+                simulation.drawTickets(Constants.IN_GAME_TICKETS_COUNT, keptMask);
+                return gameState.withChosenAdditionalTickets(gameState.topTickets(Constants.IN_GAME_TICKETS_COUNT), keptTickets.build());
+
+            case DRAW_TUNNEL_CARD:
+                if (gameState.cardState().isDeckEmpty()) return gameState;
+                SortedBag<Card> drawnCard = SortedBag.of(gameState.topCard());
+                simulation.removeTopCard();
+                simulation.discard(drawnCard);
+                return gameState.withoutTopCard().withMoreDiscardedCards(drawnCard);
+
+            case NEXT_TURN:
+                simulation.nextTurn();
+                return gameState.forNextTurn();
+
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    //throws an AssertionError if the simulation differs from the game state
+    private static void compare(GameState gameState, SimulationState simulation, String where) {
+        try {
+            compare(gameState, simulation);
+        } catch (AssertionError e) {
+            throw new AssertionError(where + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void compare(GameState gameState, SimulationState simulation) {
+        GameState simulated = simulation.toGameState();
+        check(simulation.currentPlayerId() == gameState.currentPlayerId(), "current player");
+        check(simulation.lastPlayer() == gameState.lastPlayer() && simulation.lastTurnBegins() == gameState.lastTurnBegins(),
+                "last player");
+
+        for (PlayerId playerId : PlayerId.ALL) {
+            PlayerState playerState = gameState.playerState(playerId);
+            for (Card card : Card.ALL)
+                check(simulation.cardCount(playerId, card) == playerState.cards().countOf(card), "hand of " + playerId);
+            check(simulation.cardCount(playerId) == playerState.cardCount(), "hand size of " + playerId);
+            check(simulation.ticketCount(playerId) == playerState.ticketCount()
+                    && simulated.playerState(playerId).tickets().equals(playerState.tickets()), "tickets of " + playerId);
+            for (Route route : ChMap.routes())
+                check(simulation.hasRoute(playerId, route) == playerState.routes().contains(route), "routes of " + playerId);
+            check(simulation.carCount(playerId) == playerState.carCount()
+                    && simulation.claimPoints(playerId) == playerState.claimPoints(), "cars of " + playerId);
+            check(simulation.finalPoints(playerId) == playerState.finalPoints(), "final points of " + playerId);
+            check(simulation.longestTrailLength(playerId) == Trail.longest(playerState.routes()).length(),
+                    "longest trail of " + playerId);
+        }
+
+        CardState cardState = gameState.fullCardState();
+        CardState simulatedCardState = simulated.fullCardState();
+        for (int slot : Constants.FACE_UP_CARD_SLOTS)
+            check(simulation.faceUpCard(slot) == cardState.faceUpCard(slot), "face up cards");
+        check(simulation.deckSize() == cardState.deckSize()
+                && simulatedCardState.deck().toList().equals(cardState.deck().toList()), "deck");
+        check(simulation.discardsSize() == cardState.discardsSize()
+                && simulatedCardState.discards().equals(cardState.discards()), "discards");
+        check(simulation.ticketsCount() == gameState.ticketsCount()
+                && simulated.ticketDeck().toList().equals(gameState.ticketDeck().toList()), "ticket deck");
+        check(simulation.canDrawCards() == gameState.canDrawCards()
+                && simulation.canDrawTickets() == gameState.canDrawTickets(), "possible draws");
+
+        for (Route route : ChMap.routes()) {
+            check(simulation.isRouteOrTwinClaimed(route) == gameState.isRouteOrTwinClaimed(route)
+                    && simulation.canClaimRoute(route) == gameState.currentPlayerState().canClaimRoute(route), "route " + route.id());
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError(what);
+    }
+}